@@ -0,0 +1,65 @@
+package sql_evaluator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Table#filter} on an INT range condition that passes a given fraction of the rows, alone and together with
+ * a STR equality condition.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class FilterBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    @Param({"0.01", "0.5", "0.99"})
+    public double selectivity;
+
+    private Table table;
+    private List<ResolvedCondition> intCondition;
+    private List<ResolvedCondition> intAndStrConditions;
+
+    @Setup
+    public void setUp() {
+        table = TableGenerator.fact(rows, 1000, 0, 0);
+        int threshold = (int) (selectivity * TableGenerator.VALUE_RANGE);
+        ResolvedCondition valueBelow = new ResolvedCondition(
+                Condition.Op.LT, TableGenerator.resolve(table, "value"),
+                new ResolvedLiteral(threshold, SqlType.INT), SqlType.INT);
+        ResolvedCondition nameIsNot = new ResolvedCondition(
+                Condition.Op.NE, TableGenerator.resolve(table, "name"),
+                new ResolvedLiteral("k0", SqlType.STR), SqlType.STR);
+        intCondition = Collections.singletonList(valueBelow);
+        intAndStrConditions = Arrays.asList(nameIsNot, valueBelow);
+    }
+
+    @Benchmark
+    public Table filterInt() {
+        return table.filter(intCondition);
+    }
+
+    @Benchmark
+    public Table filterIntAndStr() {
+        return table.filter(intAndStrConditions);
+    }
+}
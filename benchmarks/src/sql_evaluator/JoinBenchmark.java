@@ -0,0 +1,78 @@
+package sql_evaluator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Table#hashJoin}: a fact table probing a dimension table with one row per key, on an INT key and on a STR
+ * key.  Building the dimension table's index is measured separately from probing it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class JoinBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    @Param({"100", "100000"})
+    public int keyCardinality;
+
+    @Param({"0", "2"})
+    public double skew;
+
+    private static final List<ResolvedCondition> NO_CONDITIONS = Collections.emptyList();
+
+    private Table fact;
+    private Table dimension;
+    private HashJoin.Index intIndex;
+    private HashJoin.Index strIndex;
+
+    @Setup
+    public void setUp() {
+        fact = TableGenerator.fact(rows, keyCardinality, skew, 0);
+        dimension = TableGenerator.dimension(keyCardinality);
+        intIndex = HashJoin.build(dimension, TableGenerator.resolve(dimension, "key"));
+        strIndex = HashJoin.build(dimension, TableGenerator.resolve(dimension, "name"));
+    }
+
+    @Benchmark
+    public HashJoin.Index buildInt() {
+        return HashJoin.build(dimension, TableGenerator.resolve(dimension, "key"));
+    }
+
+    @Benchmark
+    public Table probeInt() {
+        return fact.hashJoin(intIndex, TableGenerator.resolve(fact, "key"), NO_CONDITIONS);
+    }
+
+    @Benchmark
+    public Table probeStr() {
+        return fact.hashJoin(strIndex, TableGenerator.resolve(fact, "name"), NO_CONDITIONS);
+    }
+
+    /**
+     * The fact table as the build side, the way a join is run when it's the smaller input.
+     */
+    @Benchmark
+    public Table buildAndProbeFact() {
+        HashJoin.Index factIndex = HashJoin.build(fact, TableGenerator.resolve(fact, "key"));
+        return dimension.hashJoin(factIndex, TableGenerator.resolve(dimension, "key"), NO_CONDITIONS);
+    }
+}
@@ -0,0 +1,60 @@
+package sql_evaluator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The joins that look at every pair of rows: {@link Table#innerJoin} on an equality condition between keys with a
+ * given cardinality (so that it passes about 1 / {@code keyCardinality} of the pairs), and {@link Table#crossJoin}.
+ * Both sides have {@code rows} rows.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class NestedJoinBenchmark {
+
+    @Param({"100", "1000"})
+    public int rows;
+
+    @Param({"2", "100"})
+    public int keyCardinality;
+
+    private Table left;
+    private Table right;
+    private List<ResolvedCondition> conditions;
+
+    @Setup
+    public void setUp() {
+        left = TableGenerator.fact(rows, keyCardinality, 0, 0);
+        right = TableGenerator.fact(rows, keyCardinality, 0, 1);
+        conditions = Collections.singletonList(new ResolvedCondition(
+                Condition.Op.EQ, TableGenerator.resolve(left, "key"), TableGenerator.resolve(right, "key"),
+                SqlType.INT));
+    }
+
+    @Benchmark
+    public Table innerJoin() {
+        return left.innerJoin(right, conditions);
+    }
+
+    @Benchmark
+    public Table crossJoin() {
+        return left.crossJoin(right);
+    }
+}
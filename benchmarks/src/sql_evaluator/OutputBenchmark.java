@@ -0,0 +1,81 @@
+package sql_evaluator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Producing a query's output: {@link Table#select} and {@link Main#writeTable}, with the output discarded.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class OutputBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int rows;
+
+    private Table table;
+    private List<Selector> selectors;
+
+    @Setup
+    public void setUp() {
+        table = TableGenerator.fact(rows, 1000, 0, 0);
+        selectors = Arrays.asList(new Selector("name", new ColumnRef("name", null)),
+                                  new Selector("v", new ColumnRef("value", null)));
+    }
+
+    @Benchmark
+    public Table select() {
+        return table.select(selectors);
+    }
+
+    @Benchmark
+    public long writeTable() throws IOException {
+        CountingWriter out = new CountingWriter();
+        Main.writeTable(out, table);
+        return out.count;
+    }
+
+    /**
+     * Discards what's written to it, but counts it so the writing can't be optimized away.
+     */
+    private static final class CountingWriter extends Writer {
+        long count = 0;
+
+        @Override
+        public void write(final char[] chars, final int offset, final int length) {
+            count += length;
+        }
+
+        @Override
+        public void write(final String str, final int offset, final int length) {
+            count += length;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package sql_evaluator;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Generates synthetic tables for the benchmarks.  A fact table has the columns:
+ * <ul>
+ *   <li>"id" (INT): the row number, so every value is distinct</li>
+ *   <li>"key" (INT): one of {@code keyCardinality} values, skewed towards the small ones (see {@link #skewedKey})</li>
+ *   <li>"value" (INT): uniform over 0 to {@link #VALUE_RANGE} - 1, so "value &lt; v" selects a fraction v / 1000
+ *       of the rows</li>
+ *   <li>"name" (STR): "k" followed by the row's key, so it has the same cardinality and skew as "key"</li>
+ * </ul>
+ * A dimension table has one row per key, with the columns "key" (INT), "name" (STR, as above) and "label" (STR).
+ *
+ * Run on its own, it writes a fact table to a ".table.json" file:
+ * <pre>
+ *   java -cp benchmarks/target/benchmarks.jar sql_evaluator.TableGenerator &lt;file&gt; &lt;rows&gt; &lt;key-cardinality&gt; [&lt;skew&gt;]
+ * </pre>
+ */
+public final class TableGenerator {
+
+    static final int VALUE_RANGE = 1000;
+
+    private TableGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3 && args.length != 4) {
+            System.err.println("Usage: COMMAND <table-json-file> <rows> <key-cardinality> [<skew>]");
+            System.exit(1); return;
+        }
+
+        Table table = fact(Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                           args.length == 4 ? Double.parseDouble(args[3]) : 0, 0);
+        try (FileWriter out = new FileWriter(args[0])) {
+            Main.writeTable(out, table);
+        }
+    }
+
+    static Table fact(final int rows, final int keyCardinality, final double skew, final long seed) {
+        Random random = new Random(seed);
+        IntVector.Builder ids = new IntVector.Builder();
+        IntVector.Builder keys = new IntVector.Builder();
+        IntVector.Builder values = new IntVector.Builder();
+        StrVector.Builder names = new StrVector.Builder();
+        for (int row = 0; row < rows; row++) {
+            int key = skewedKey(random, keyCardinality, skew);
+            ids.add(row);
+            keys.add(key);
+            values.add(random.nextInt(VALUE_RANGE));
+            names.add("k" + key);
+        }
+
+        ArrayList<Table.ColumnDef> columns = new ArrayList<>();
+        columns.add(new Table.ColumnDef("id", SqlType.INT));
+        columns.add(new Table.ColumnDef("key", SqlType.INT));
+        columns.add(new Table.ColumnDef("value", SqlType.INT));
+        columns.add(new Table.ColumnDef("name", SqlType.STR));
+        ArrayList<ColumnVector> vectors = new ArrayList<>();
+        vectors.add(ids.build());
+        vectors.add(keys.build());
+        vectors.add(values.build());
+        vectors.add(names.build());
+        return new Table(columns, vectors, rows);
+    }
+
+    static Table dimension(final int keyCardinality) {
+        IntVector.Builder keys = new IntVector.Builder();
+        StrVector.Builder names = new StrVector.Builder();
+        StrVector.Builder labels = new StrVector.Builder();
+        for (int key = 0; key < keyCardinality; key++) {
+            keys.add(key);
+            names.add("k" + key);
+            labels.add("label " + (key % 100));
+        }
+
+        ArrayList<Table.ColumnDef> columns = new ArrayList<>();
+        columns.add(new Table.ColumnDef("key", SqlType.INT));
+        columns.add(new Table.ColumnDef("name", SqlType.STR));
+        columns.add(new Table.ColumnDef("label", SqlType.STR));
+        ArrayList<ColumnVector> vectors = new ArrayList<>();
+        vectors.add(keys.build());
+        vectors.add(names.build());
+        vectors.add(labels.build());
+        return new Table(columns, vectors, keyCardinality);
+    }
+
+    /**
+     * A key from 0 to {@code keyCardinality} - 1.  With a skew of 0 every key is equally likely; larger skews make
+     * the small keys more and more common (the key is {@code keyCardinality * u^(1 + skew)} for a uniform u).
+     */
+    static int skewedKey(final Random random, final int keyCardinality, final double skew) {
+        double u = random.nextDouble();
+        return (int) (keyCardinality * Math.pow(u, 1 + skew));
+    }
+
+    /**
+     * The named column of a generated table, as a condition or join key term.
+     */
+    static ResolvedColumn resolve(final Table table, final String name) {
+        for (int i = 0; i < table.columns.size(); i++) {
+            if (table.columns.get(i).name.equals(name)) {
+                return new ResolvedColumn(i, table.columns.get(i).type);
+            }
+        }
+        throw new IllegalArgumentException("no column \"" + name + "\"");
+    }
+}
@@ -0,0 +1,4 @@
+-- A city that isn't in the table.
+SELECT name, country
+FROM cities
+WHERE name = "Atlantis"
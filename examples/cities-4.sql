@@ -0,0 +1,6 @@
+-- The five most populous cities outside their country's capital.
+SELECT cities.name, cities.population AS people
+FROM countries, cities
+WHERE countries.name = cities.country AND countries.capital != cities.name
+ORDER BY people DESC, cities.name
+LIMIT 5
@@ -0,0 +1,5 @@
+-- A LIMIT without an ORDER BY may keep any of the matching rows, which here are all the same.
+SELECT country
+FROM cities
+WHERE country = "Japan"
+LIMIT 2
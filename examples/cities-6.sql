@@ -0,0 +1,5 @@
+-- Cities in reverse order of country.  Cities in the same country keep the table's order, including at the limit.
+SELECT name, country
+FROM cities
+ORDER BY country DESC
+LIMIT 6
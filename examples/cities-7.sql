@@ -0,0 +1,5 @@
+-- The smaller cities, from smallest to largest, sorted on a column that isn't selected.
+SELECT name
+FROM cities
+WHERE population < 3000
+ORDER BY cities.population
@@ -0,0 +1,4 @@
+-- The largest cities, few enough for an index on population to find them.
+SELECT name, population
+FROM cities
+WHERE population > 12000
@@ -0,0 +1,4 @@
+-- One city by name, with the capital of its country.
+SELECT cities.name AS name, countries.capital AS capital
+FROM cities, countries
+WHERE cities.name = "Osaka" AND countries.name = cities.country
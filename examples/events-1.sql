@@ -0,0 +1,4 @@
+-- Ten minutes of events, from a table clustered on "ts", so zone maps can skip every block but one.
+SELECT id, ts, kind
+FROM events
+WHERE ts >= 1600150000 AND ts < 1600150600
@@ -0,0 +1,4 @@
+-- A kind of event that only occurs in one block.
+SELECT id, ts
+FROM events
+WHERE kind = "restart"
@@ -0,0 +1,4 @@
+-- A kind of event that never occurs.
+SELECT id, ts
+FROM events
+WHERE kind = "crash"
@@ -0,0 +1,5 @@
+-- A LIMIT of 0 only outputs the column headers.
+SELECT a.name AS a_name, b.name AS b_name
+FROM a, b
+WHERE a.age < b.distance
+LIMIT 0
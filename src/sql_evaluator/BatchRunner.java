@@ -0,0 +1,253 @@
+package sql_evaluator;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Runs many queries against one table folder, writing each query's output next to it (the output of "q.sql.json"
+ * goes to "q.out").
+ *
+ * Every table is loaded once, however many queries use it.  Filtering is shared too: each table is scanned once,
+ * checking every row against the filter conditions of every query that reads the table.  The queries themselves then
+ * run in parallel.
+ */
+final class BatchRunner {
+    private final String tableFolder;
+    private final TableCache tableCache = new TableCache();
+
+    BatchRunner(final String tableFolder) {
+        this.tableFolder = tableFolder;
+    }
+
+    static String outputPath(final String queryPath) {
+        String base = queryPath.endsWith(".sql.json") ? queryPath.substring(0, queryPath.length() - ".sql.json".length())
+                                                      : queryPath;
+        return base + ".out";
+    }
+
+    /**
+     * Runs the queries in the given ".sql.json" files.  Returns false if any query or table file couldn't be loaded,
+     * or any output file couldn't be written (which is reported on stderr, and leaves that query without an output
+     * file, or with an incomplete one).  The other queries still run.
+     */
+    boolean run(final List<String> queryPaths) {
+        boolean success = true;
+        List<BatchQuery> queries = new ArrayList<>();
+        Map<Table, List<FilterScan>> scansBySource = new IdentityHashMap<>();
+        for (String queryPath : queryPaths) {
+            BatchQuery batchQuery = load(queryPath);
+            if (batchQuery == null) {
+                success = false;
+                continue;
+            }
+
+            try {
+                Validator.checkQueryValidity(batchQuery.tables, batchQuery.query);
+            } catch (RuntimeException e) {
+                if (!writeError(batchQuery.outputPath, e)) {
+                    success = false;
+                }
+                continue;
+            }
+
+            queries.add(batchQuery);
+            for (int i = 0; i < batchQuery.tables.size(); i++) {
+                Table table = batchQuery.tables.get(i);
+                FilterScan scan = new FilterScan(Executor.getFilterConditions(table.columns, batchQuery.query.where));
+                batchQuery.scans.add(scan);
+                if (scan.useIndex(table)) {
+                    continue;
+                }
+                if (!scan.conditions.isEmpty()) {
+                    scansBySource.computeIfAbsent(batchQuery.sources.get(i), source -> new ArrayList<>()).add(scan);
+                }
+            }
+        }
+
+        List<Callable<Void>> scanTasks = new ArrayList<>();
+        for (Map.Entry<Table, List<FilterScan>> entry : scansBySource.entrySet()) {
+            scanTasks.add(() -> {
+                scan(entry.getKey(), entry.getValue());
+                return null;
+            });
+        }
+        Parallelism.invokeAll(scanTasks);
+
+        List<Callable<Boolean>> queryTasks = new ArrayList<>();
+        for (BatchQuery batchQuery : queries) {
+            queryTasks.add(() -> execute(batchQuery));
+        }
+        for (boolean written : Parallelism.invokeAll(queryTasks)) {
+            if (!written) {
+                success = false;
+            }
+        }
+
+        return success;
+    }
+
+    /**
+     * Reads a query and its tables, or reports the problem and returns null.
+     */
+    private BatchQuery load(final String queryPath) {
+        Query query;
+        try {
+            query = JacksonUtil.readFromFile(queryPath, Query.class);
+        } catch (JsonProcessingException ex) {
+            System.err.println("Error loading \"" + queryPath + "\" as query JSON: " + ex.getMessage());
+            return null;
+        } catch (IOException ex) {
+            System.err.println("Error loading \"" + queryPath + "\": " + ex.getMessage());
+            return null;
+        }
+
+        BatchQuery batchQuery = new BatchQuery(query, outputPath(queryPath));
+        for (TableDecl tableDecl : query.from) {
+            String tableSourcePath = Main.getTableSourcePath(tableFolder, tableDecl);
+            Table source;
+            try {
+                source = tableCache.get(tableSourcePath);
+            } catch (IOException ex) {
+                System.err.println("Error loading \"" + tableSourcePath + "\": " + ex.getMessage());
+                return null;
+            }
+            batchQuery.sources.add(source);
+            batchQuery.tables.add(source.withQualifier(tableDecl.name));
+        }
+        return batchQuery;
+    }
+
+    /**
+     * Filters one table for every query that reads it, in a single pass over its rows.  Each block of rows is only
+     * checked against the filters its {@link ZoneMap zone maps} don't rule out.
+     */
+    private static void scan(final Table source, final List<FilterScan> scans) {
+        List<FilterScan> blockScans = new ArrayList<>();
+        for (int start = 0; start < source.rowCount; start += ZoneMap.BLOCK_SIZE) {
+            int end = Math.min(source.rowCount, start + ZoneMap.BLOCK_SIZE);
+            blockScans.clear();
+            for (FilterScan scan : scans) {
+                if (scan.pruner == null || scan.pruner.mayMatch(start / ZoneMap.BLOCK_SIZE)) {
+                    blockScans.add(scan);
+                }
+            }
+
+            for (int row = start; row < end; row++) {
+                for (FilterScan scan : blockScans) {
+                    if (scan.error != null) {
+                        continue;
+                    }
+                    try {
+                        if (scan.conjunction.matches(source, row, null, -1)) {
+                            scan.rows.add(row);
+                        }
+                    } catch (RuntimeException e) {
+                        // only the query this filter belongs to fails
+                        scan.error = e;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a query on its filtered tables, writing its output (or error message) to its output file.  Returns false
+     * if the output file couldn't be written, which is reported on stderr.
+     */
+    private static boolean execute(final BatchQuery batchQuery) {
+        List<Table> filteredTables = new ArrayList<>();
+        for (int i = 0; i < batchQuery.tables.size(); i++) {
+            FilterScan scan = batchQuery.scans.get(i);
+            if (scan.error != null) {
+                // the tables are filtered in order, so this is the error the query would have failed with on its own
+                return writeError(batchQuery.outputPath, scan.error);
+            }
+            Table table = batchQuery.tables.get(i);
+            filteredTables.add(scan.conditions.isEmpty() ? table : table.selectRows(scan.rows));
+        }
+
+        try {
+            try (Writer out = new BufferedWriter(new FileWriter(batchQuery.outputPath), Main.OUTPUT_BUFFER_SIZE)) {
+                Executor.executeFilteredQuery(filteredTables, batchQuery.query, new Main.WriterSink(out));
+            }
+        } catch (RuntimeException e) {
+            return writeError(batchQuery.outputPath, e);
+        } catch (IOException ex) {
+            System.err.println("Error writing \"" + batchQuery.outputPath + "\": " + ex.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Writes a query's error message to its output file.  Returns false if it couldn't be written, which is reported
+     * on stderr.
+     */
+    private static boolean writeError(final String outputPath, final RuntimeException e) {
+        try (FileWriter out = new FileWriter(outputPath)) {
+            out.write(e.getMessage());
+        } catch (IOException ex) {
+            System.err.println("Error writing \"" + outputPath + "\": " + ex.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    private static final class BatchQuery {
+        final Query query;
+        final String outputPath;
+        final List<Table> sources = new ArrayList<>();  // the cached tables, shared with other queries
+        final List<Table> tables = new ArrayList<>();   // the same tables, with this query's qualifiers
+        final List<FilterScan> scans = new ArrayList<>();
+
+        BatchQuery(final Query query, final String outputPath) {
+            this.query = query;
+            this.outputPath = outputPath;
+        }
+    }
+
+    /**
+     * One query's filter on one of its tables, and the rows of the table that pass it.
+     */
+    private static final class FilterScan {
+        final List<ResolvedCondition> conditions;
+        final Conjunction conjunction;
+        IntList rows = new IntList();
+        ZoneMap.Pruner pruner;
+        RuntimeException error;
+
+        FilterScan(final List<ResolvedCondition> conditions) {
+            this.conditions = conditions;
+            this.conjunction = new Conjunction(conditions);
+        }
+
+        /**
+         * Finds the matching rows with one of the table's indexes, if one can answer a condition with few enough
+         * rows; otherwise returns false, and the table has to be scanned (skipping the blocks of it that the table's
+         * zone maps rule out).
+         */
+        boolean useIndex(final Table table) {
+            for (ResolvedCondition condition : conditions) {
+                if (!condition.isEvaluable()) {
+                    return false;
+                }
+            }
+            pruner = ZoneMap.Pruner.create(table, conditions);
+            IntList indexedRows = conditions.isEmpty() ? null : FilterKernels.indexedMatchingRows(table, conditions);
+            if (indexedRows == null) {
+                return false;
+            }
+            rows = indexedRows;
+            return true;
+        }
+    }
+}
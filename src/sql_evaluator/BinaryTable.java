@@ -0,0 +1,300 @@
+package sql_evaluator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes ".table.bin" files: tables stored column by column, so that they can be memory-mapped instead of
+ * parsed.  INT cells (and the dictionary codes of STR cells) are read in place from the mapping, so loading a table
+ * only costs reading its footer and its STR dictionaries, however many rows it has.
+ *
+ * All numbers are little-endian.  A file is laid out as:
+ * <pre>
+ *   "SQLTBIN2"
+ *   for each column:
+ *     INT: one int per cell
+ *     STR: the dictionary (an int count, then each string as an int byte length and its UTF-8 bytes), padded to a
+ *          multiple of 4 bytes, followed by one int dictionary code per cell
+ *   for each column of a table with more than {@link ZoneMap#MIN_ROWS} rows: its zone map (see
+ *     {@link ZoneMap#writeTo})
+ *   the footer:
+ *     int column count, int row count
+ *     for each column: its name (an int byte length and UTF-8 bytes), its type (a byte: 0 for INT, 1 for STR), its
+ *     statistics (see {@link ColumnStats#writeTo}), the long offset of its dictionary (-1 for INT columns), the
+ *     long offset of its cells, and the long offset of its zone map (-1 if it hasn't got one)
+ *   the long offset of the footer
+ *   "SQLTBIN2"
+ * </pre>
+ *
+ * Files written before zone maps were added start and end with "SQLTBIN1" and have no zone maps or zone map offsets;
+ * they're still read.
+ *
+ * Each column is mapped separately, so a column can hold at most 2^29 rows.
+ */
+final class BinaryTable {
+    private static final byte[] MAGIC = "SQLTBIN2".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MAGIC_WITHOUT_ZONE_MAPS = "SQLTBIN1".getBytes(StandardCharsets.US_ASCII);
+    private static final byte INT_TYPE = 0;
+    private static final byte STR_TYPE = 1;
+
+    /**
+     * Converts each ".table.json" file given on the command line into a ".table.bin" file next to it.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: COMMAND <table-json-file>...");
+            System.exit(1); return;
+        }
+
+        for (String jsonPath : args) {
+            if (!jsonPath.endsWith(".table.json")) {
+                System.err.println("Expecting a \".table.json\" file, got \"" + jsonPath + "\"");
+                System.exit(1); return;
+            }
+            Table table = JacksonUtil.readFromFile(jsonPath, Table.class);
+            write(table, binaryPath(jsonPath));
+        }
+    }
+
+    /**
+     * The ".table.bin" file that holds the same table as a ".table.json" file.
+     */
+    static String binaryPath(final String jsonPath) {
+        return jsonPath.substring(0, jsonPath.length() - ".json".length()) + ".bin";
+    }
+
+    static void write(final Table table, final String path) throws IOException {
+        try (Output out = new Output(FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+                                                      StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))) {
+            out.putBytes(MAGIC);
+
+            long[] dictionaryOffsets = new long[table.columns.size()];
+            long[] cellOffsets = new long[table.columns.size()];
+            ZoneMap[] zoneMaps = new ZoneMap[table.columns.size()];
+            boolean hasZoneMaps = table.rowCount > ZoneMap.MIN_ROWS;
+            for (int i = 0; i < table.columns.size(); i++) {
+                ColumnVector vector = table.vectors.get(i);
+                if (vector.type == SqlType.INT) {
+                    dictionaryOffsets[i] = -1;
+                    cellOffsets[i] = out.position;
+                    for (int row = 0; row < table.rowCount; row++) {
+                        out.reserve(4).putInt(vector.getInt(row));
+                    }
+                    zoneMaps[i] = hasZoneMaps ? ZoneMap.build(vector) : null;
+                } else {
+                    Map<String, Integer> codesByValue = new HashMap<>();
+                    List<String> dictionary = new ArrayList<>();
+                    int[] codes = new int[table.rowCount];
+                    for (int row = 0; row < table.rowCount; row++) {
+                        String value = vector.getString(row);
+                        Integer code = codesByValue.get(value);
+                        if (code == null) {
+                            code = dictionary.size();
+                            dictionary.add(value);
+                            codesByValue.put(value, code);
+                        }
+                        codes[row] = code;
+                    }
+
+                    dictionaryOffsets[i] = out.position;
+                    out.reserve(4).putInt(dictionary.size());
+                    for (String value : dictionary) {
+                        out.putString(value);
+                    }
+                    out.pad();
+                    cellOffsets[i] = out.position;
+                    for (int code : codes) {
+                        out.reserve(4).putInt(code);
+                    }
+                    // over the codes as written, which needn't be the vector's own
+                    zoneMaps[i] = hasZoneMaps
+                            ? ZoneMap.build(new StrVector(codes, table.rowCount, new Dictionary(dictionary, codesByValue)))
+                            : null;
+                }
+            }
+
+            long[] zoneMapOffsets = new long[table.columns.size()];
+            for (int i = 0; i < table.columns.size(); i++) {
+                zoneMapOffsets[i] = zoneMaps[i] != null ? out.position : -1;
+                if (zoneMaps[i] != null) {
+                    zoneMaps[i].writeTo(out);
+                }
+            }
+
+            long footerOffset = out.position;
+            out.reserve(8).putInt(table.columns.size()).putInt(table.rowCount);
+            for (int i = 0; i < table.columns.size(); i++) {
+                Table.ColumnDef columnDef = table.columns.get(i);
+                out.putString(columnDef.name);
+                out.reserve(1).put(columnDef.type == SqlType.INT ? INT_TYPE : STR_TYPE);
+                ColumnStats stats = columnDef.stats != null ? columnDef.stats : computeStats(table.vectors.get(i));
+                stats.writeTo(out.reserve(stats.serializedSize()));
+                out.reserve(24).putLong(dictionaryOffsets[i]).putLong(cellOffsets[i]).putLong(zoneMapOffsets[i]);
+            }
+            out.reserve(8).putLong(footerOffset);
+            out.putBytes(MAGIC);
+        }
+    }
+
+    private static ColumnStats computeStats(final ColumnVector vector) {
+        ColumnStats.Builder builder = new ColumnStats.Builder(vector.type);
+        for (int row = 0; row < vector.size(); row++) {
+            if (vector.type == SqlType.INT) {
+                builder.addInt(vector.getInt(row));
+            } else {
+                builder.addString(vector.getString(row));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Maps a ".table.bin" file.  The mappings stay valid after the file is closed, until the table is garbage
+     * collected.
+     */
+    static Table map(final String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            long size = channel.size();
+            byte[] magic = size >= 2 * MAGIC.length + 8 ? getMagic(map(channel, 0, MAGIC.length)) : null;
+            if (!Arrays.equals(magic, MAGIC) && !Arrays.equals(magic, MAGIC_WITHOUT_ZONE_MAPS)) {
+                throw new IOException("not a binary table file");
+            }
+            boolean hasZoneMaps = Arrays.equals(magic, MAGIC);
+            ByteBuffer trailer = map(channel, size - MAGIC.length - 8, MAGIC.length + 8);
+            long footerOffset = trailer.getLong();
+            if (!Arrays.equals(getMagic(trailer), magic)
+                    || footerOffset < MAGIC.length || footerOffset > size - MAGIC.length - 8) {
+                throw new IOException("binary table file is truncated or corrupt");
+            }
+
+            ByteBuffer footer = map(channel, footerOffset, size - MAGIC.length - 8 - footerOffset);
+            int columnCount = footer.getInt();
+            int rowCount = footer.getInt();
+            ArrayList<Table.ColumnDef> columns = new ArrayList<>();
+            ArrayList<ColumnVector> vectors = new ArrayList<>();
+            ZoneMap[] zoneMaps = new ZoneMap[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                String name = getString(footer);
+                SqlType type = footer.get() == INT_TYPE ? SqlType.INT : SqlType.STR;
+                Table.ColumnDef columnDef = new Table.ColumnDef(name, type);
+                columnDef.stats = ColumnStats.readFrom(type, footer);
+                long dictionaryOffset = footer.getLong();
+                long cellOffset = footer.getLong();
+                long zoneMapOffset = hasZoneMaps ? footer.getLong() : -1;
+                columns.add(columnDef);
+                if (zoneMapOffset >= 0) {
+                    ByteBuffer zoneMap = map(channel, zoneMapOffset, footerOffset - zoneMapOffset);
+                    zoneMaps[i] = ZoneMap.readFrom(type, rowCount, zoneMap);
+                }
+
+                ByteBuffer cells = map(channel, cellOffset, 4L * rowCount);
+                if (type == SqlType.INT) {
+                    vectors.add(new MappedIntVector(cells.asIntBuffer()));
+                } else {
+                    ByteBuffer dictionaryBuffer = map(channel, dictionaryOffset, cellOffset - dictionaryOffset);
+                    String[] dictionary = new String[dictionaryBuffer.getInt()];
+                    for (int code = 0; code < dictionary.length; code++) {
+                        dictionary[code] = getString(dictionaryBuffer);
+                    }
+                    vectors.add(new MappedStrVector(cells.asIntBuffer(), Dictionary.of(Arrays.asList(dictionary))));
+                }
+            }
+
+            Table table = new Table(columns, vectors, rowCount);
+            return hasZoneMaps ? table.withZoneMaps(zoneMaps) : table;
+        }
+    }
+
+    private static ByteBuffer map(final FileChannel channel, final long offset, final long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("column is too large to map (" + size + " bytes)");
+        }
+        if (offset < 0 || size < 0 || offset + size > channel.size()) {
+            throw new IOException("binary table file is truncated or corrupt");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static byte[] getMagic(final ByteBuffer buffer) {
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+        return magic;
+    }
+
+    static String getString(final ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Buffered, little-endian output to a file channel, tracking the file offset written so far.
+     */
+    static final class Output implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        long position = 0;
+
+        Output(final FileChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Returns the buffer, with room for {@code bytes} more bytes (at most the buffer's capacity) to be put.
+         */
+        ByteBuffer reserve(final int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+            position += bytes;
+            return buffer;
+        }
+
+        void putBytes(final byte[] bytes) throws IOException {
+            for (int offset = 0; offset < bytes.length; offset += buffer.capacity()) {
+                int length = Math.min(buffer.capacity(), bytes.length - offset);
+                reserve(length).put(bytes, offset, length);
+            }
+        }
+
+        void putString(final String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            reserve(4).putInt(bytes.length);
+            putBytes(bytes);
+        }
+
+        void pad() throws IOException {
+            while (position % 4 != 0) {
+                reserve(1).put((byte) 0);
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package sql_evaluator;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Per-column statistics collected while a table is loaded, used by the {@link Planner} to estimate the selectivity of
+ * filters and the cardinality of joins.
+ */
+public final class ColumnStats {
+    private static final int SAMPLE_SIZE = 1024;
+    private static final int HISTOGRAM_BUCKETS = 32;
+
+    public final SqlType type;
+    public final int valueCount;  // the table format has no NULLs, so this is also the row count
+    public final long distinctCount;
+
+    // INT only; meaningless when valueCount is 0
+    public final int min;
+    public final int max;
+
+    // INT only: an equi-depth histogram, where each bucket [bounds[i], bounds[i+1]] holds roughly the same number of
+    // values.  Built from a sample, so the bucket boundaries are approximate.
+    private final int[] histogramBounds;
+
+    private ColumnStats(final SqlType type, final int valueCount, final long distinctCount,
+                        final int min, final int max, final int[] histogramBounds) {
+        this.type = type;
+        this.valueCount = valueCount;
+        this.distinctCount = Math.max(1, Math.min(distinctCount, valueCount));
+        this.min = min;
+        this.max = max;
+        this.histogramBounds = histogramBounds;
+    }
+
+    /**
+     * Writes the statistics in the layout {@link #readFrom} expects; used to store them in a ".table.bin" file.
+     */
+    void writeTo(final ByteBuffer out) {
+        out.putInt(valueCount);
+        out.putLong(distinctCount);
+        out.putInt(min);
+        out.putInt(max);
+        if (histogramBounds == null) {
+            out.putInt(-1);
+        } else {
+            out.putInt(histogramBounds.length);
+            for (int bound : histogramBounds) {
+                out.putInt(bound);
+            }
+        }
+    }
+
+    /**
+     * The number of bytes {@link #writeTo} writes.
+     */
+    int serializedSize() {
+        return 24 + (histogramBounds == null ? 0 : 4 * histogramBounds.length);
+    }
+
+    static ColumnStats readFrom(final SqlType type, final ByteBuffer in) {
+        int valueCount = in.getInt();
+        long distinctCount = in.getLong();
+        int min = in.getInt();
+        int max = in.getInt();
+        int boundCount = in.getInt();
+        int[] histogramBounds = null;
+        if (boundCount >= 0) {
+            histogramBounds = new int[boundCount];
+            for (int i = 0; i < boundCount; i++) {
+                histogramBounds[i] = in.getInt();
+            }
+        }
+        return new ColumnStats(type, valueCount, distinctCount, min, max, histogramBounds);
+    }
+
+    /**
+     * Estimates the fraction of values in the column for which {@code value op literal} holds.
+     */
+    public double estimateSelectivity(final Condition.Op op, final Object literal) {
+        if (valueCount == 0) {
+            return 0;
+        }
+
+        if (type != SqlType.INT) {
+            double equal = 1.0 / distinctCount;
+            switch (op) {
+                case EQ:
+                    return equal;
+                case NE:
+                    return 1 - equal;
+                default:
+                    return 1.0 / 3;
+            }
+        }
+
+        int value = (Integer) literal;
+        double equal = value < min || value > max ? 0 : 1.0 / distinctCount;
+        double below = fractionBelow(value);
+        double selectivity;
+        switch (op) {
+            case EQ:
+                selectivity = equal;
+                break;
+            case NE:
+                selectivity = 1 - equal;
+                break;
+            case LT:
+                selectivity = below;
+                break;
+            case LE:
+                selectivity = below + equal;
+                break;
+            case GT:
+                selectivity = 1 - below - equal;
+                break;
+            case GE:
+                selectivity = 1 - below;
+                break;
+            default:
+                throw new RuntimeException("Unexpected operation type for comparison: " + op);
+        }
+
+        return Math.max(0, Math.min(1, selectivity));
+    }
+
+    /**
+     * Estimates the fraction of (left, right) value pairs for which {@code left op right} holds, assuming the two
+     * columns are independent.  Only meaningful for INT columns.
+     */
+    static double estimateJoinSelectivity(final Condition.Op op, final ColumnStats left, final ColumnStats right) {
+        if (left.valueCount == 0 || right.valueCount == 0) {
+            return 0;
+        }
+        if (op == Condition.Op.EQ || op == Condition.Op.NE) {
+            double equal = 1.0 / Math.max(left.distinctCount, right.distinctCount);
+            return op == Condition.Op.EQ ? equal : 1 - equal;
+        }
+
+        // average, over the (equal-sized) buckets of the left histogram, the fraction of right values that the
+        // bucket's midpoint is below
+        int buckets = left.histogramBounds.length - 1;
+        double below = 0;
+        for (int i = 0; i < buckets; i++) {
+            double midpoint = (left.histogramBounds[i] + (double) left.histogramBounds[i + 1]) / 2;
+            below += 1 - right.fractionBelow(midpoint);
+        }
+        below /= buckets;
+
+        switch (op) {
+            case LT:
+            case LE:
+                return below;
+            case GT:
+            case GE:
+                return 1 - below;
+            default:
+                throw new RuntimeException("Unexpected operation type for comparison: " + op);
+        }
+    }
+
+    /**
+     * Estimates the fraction of values strictly less than {@code value}, interpolating linearly within a bucket.
+     */
+    private double fractionBelow(final double value) {
+        if (value <= min) {
+            return 0;
+        }
+        if (value > max) {
+            return 1;
+        }
+
+        int buckets = histogramBounds.length - 1;
+        double below = 0;
+        for (int i = 0; i < buckets; i++) {
+            int low = histogramBounds[i];
+            int high = histogramBounds[i + 1];
+            if (high < value) {
+                below += 1;
+            } else if (low < value) {
+                below += (value - low) / (high - low);
+            }
+        }
+
+        return below / buckets;
+    }
+
+    /**
+     * Accumulates statistics for one column in the same pass that loads its values.
+     */
+    public static final class Builder {
+        private final SqlType type;
+        private final HyperLogLog distinct = new HyperLogLog();
+        private final Random random = new Random(0);  // fixed seed, so estimates are reproducible
+        private final int[] sample = new int[SAMPLE_SIZE];
+        private int valueCount = 0;
+        private int min = Integer.MAX_VALUE;
+        private int max = Integer.MIN_VALUE;
+
+        public Builder(final SqlType type) {
+            this.type = type;
+        }
+
+        public void addInt(final int value) {
+            distinct.addInt(value);
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+
+            // reservoir sampling, so the histogram reflects the whole column and not just its first rows
+            if (valueCount < SAMPLE_SIZE) {
+                sample[valueCount] = value;
+            } else {
+                int slot = random.nextInt(valueCount + 1);
+                if (slot < SAMPLE_SIZE) {
+                    sample[slot] = value;
+                }
+            }
+            valueCount++;
+        }
+
+        public void addString(final String value) {
+            distinct.addString(value);
+            valueCount++;
+        }
+
+        public ColumnStats build() {
+            int[] histogramBounds = null;
+            if (type == SqlType.INT && valueCount > 0) {
+                int sampled = Math.min(valueCount, SAMPLE_SIZE);
+                int[] sorted = Arrays.copyOf(sample, sampled);
+                Arrays.sort(sorted);
+
+                int buckets = Math.min(HISTOGRAM_BUCKETS, sampled);
+                histogramBounds = new int[buckets + 1];
+                for (int i = 0; i <= buckets; i++) {
+                    histogramBounds[i] = sorted[(int) ((long) i * (sampled - 1) / buckets)];
+                }
+                // the sample may have missed the extremes
+                histogramBounds[0] = min;
+                histogramBounds[buckets] = max;
+            }
+
+            return new ColumnStats(type, valueCount, distinct.estimate(), min, max, histogramBounds);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package sql_evaluator;
+
+
+/**
+ * A single column of a {@link Table}, stored in a primitive-specialized form.
+ */
+public abstract class ColumnVector {
+    public final SqlType type;
+
+    public ColumnVector(final SqlType type) {
+        this.type = type;
+    }
+
+    public abstract int size();
+
+    /**
+     * Returns the cell as a String or Integer object.  Hot paths should prefer the typed getters.
+     */
+    public abstract Object getValue(final int row);
+
+    public int getInt(final int row) {
+        throw new UnsupportedOperationException("not an int column: " + type);
+    }
+
+    public String getString(final int row) {
+        throw new UnsupportedOperationException("not a str column: " + type);
+    }
+
+    /**
+     * The dictionary of a STR column whose cells are stored as codes into it (see {@link #getCode}), or null.  A
+     * dictionary holds each value once, so two cells sharing a dictionary are equal exactly when their codes are.
+     */
+    public Dictionary dictionary() {
+        return null;
+    }
+
+    /**
+     * Returns the cell's code in {@link #dictionary}.
+     */
+    public int getCode(final int row) {
+        throw new UnsupportedOperationException("not a dictionary-coded column: " + type);
+    }
+
+    /**
+     * Copies the dictionary codes of rows {@code from} to {@code from + count - 1} into the start of {@code dest}.
+     */
+    public void getCodes(final int from, final int count, final int[] dest) {
+        for (int i = 0; i < count; i++) {
+            dest[i] = getCode(from + i);
+        }
+    }
+
+    /**
+     * Copies the INT cells of rows {@code from} to {@code from + count - 1} into the start of {@code dest}.
+     */
+    public void getInts(final int from, final int count, final int[] dest) {
+        for (int i = 0; i < count; i++) {
+            dest[i] = getInt(from + i);
+        }
+    }
+
+    /**
+     * Estimates the number of distinct values in the vector without scanning it.
+     */
+    public abstract int estimateDistinctCount();
+}
@@ -0,0 +1,124 @@
+package sql_evaluator;
+
+/**
+ * A {@link ResolvedCondition} compiled into code for its particular shape: its type, its operator, and whether it
+ * compares a column with a literal or with another column.  Each shape is a separate lambda (and so a separate
+ * class), with the column indexes and the unboxed literal captured once, so evaluating a condition doesn't go
+ * through any switches, term lookups or boxing, and the JIT sees a single small method at each call site it can
+ * inline.
+ */
+@FunctionalInterface
+interface CompiledCondition {
+
+    boolean test(Table leftTable, int leftRow, Table rightTable, int rightRow);
+
+    static CompiledCondition compile(final ResolvedCondition condition) {
+        final Condition.Op op = condition.op;
+        if (!(condition.left instanceof ResolvedColumn)) {
+            // the validator doesn't allow literals on the left, so this is never hot
+            return condition::evaluateTerms;
+        }
+        final int leftColumn = ((ResolvedColumn) condition.left).columnIndex;
+
+        switch (condition.type) {
+            case INT:
+                if (condition.right instanceof ResolvedLiteral) {
+                    final int literal = condition.right.getIntForRow(null, -1);
+                    switch (op) {
+                        case EQ:
+                            return (leftTable, leftRow, rightTable, rightRow) ->
+                                    leftTable.vectors.get(leftColumn).getInt(leftRow) == literal;
+                        case GE:
+                            return (leftTable, leftRow, rightTable, rightRow) ->
+                                    leftTable.vectors.get(leftColumn).getInt(leftRow) >= literal;
+                        case GT:
+                            return (leftTable, leftRow, rightTable, rightRow) ->
+                                    leftTable.vectors.get(leftColumn).getInt(leftRow) > literal;
+                        case LE:
+                            return (leftTable, leftRow, rightTable, rightRow) ->
+                                    leftTable.vectors.get(leftColumn).getInt(leftRow) <= literal;
+                        case LT:
+                            return (leftTable, leftRow, rightTable, rightRow) ->
+                                    leftTable.vectors.get(leftColumn).getInt(leftRow) < literal;
+                        case NE:
+                            return (leftTable, leftRow, rightTable, rightRow) ->
+                                    leftTable.vectors.get(leftColumn).getInt(leftRow) != literal;
+                        default:
+                            return failing("Unexpected operation type for comparison: " + op);
+                    }
+                } else if (condition.right instanceof ResolvedColumn) {
+                    final int rightColumn = ((ResolvedColumn) condition.right).columnIndex;
+                    switch (op) {
+                        case EQ:
+                            return (leftTable, leftRow, rightTable, rightRow) ->
+                                    leftTable.vectors.get(leftColumn).getInt(leftRow)
+                                            == rightTable.vectors.get(rightColumn).getInt(rightRow);
+                        case GE:
+                            return (leftTable, leftRow, rightTable, rightRow) ->
+                                    leftTable.vectors.get(leftColumn).getInt(leftRow)
+                                            >= rightTable.vectors.get(rightColumn).getInt(rightRow);
+                        case GT:
+                            return (leftTable, leftRow, rightTable, rightRow) ->
+                                    leftTable.vectors.get(leftColumn).getInt(leftRow)
+                                            > rightTable.vectors.get(rightColumn).getInt(rightRow);
+                        case LE:
+                            return (leftTable, leftRow, rightTable, rightRow) ->
+                                    leftTable.vectors.get(leftColumn).getInt(leftRow)
+                                            <= rightTable.vectors.get(rightColumn).getInt(rightRow);
+                        case LT:
+                            return (leftTable, leftRow, rightTable, rightRow) ->
+                                    leftTable.vectors.get(leftColumn).getInt(leftRow)
+                                            < rightTable.vectors.get(rightColumn).getInt(rightRow);
+                        case NE:
+                            return (leftTable, leftRow, rightTable, rightRow) ->
+                                    leftTable.vectors.get(leftColumn).getInt(leftRow)
+                                            != rightTable.vectors.get(rightColumn).getInt(rightRow);
+                        default:
+                            return failing("Unexpected operation type for comparison: " + op);
+                    }
+                }
+                return condition::evaluateTerms;
+            case STR:
+                if (condition.right instanceof ResolvedLiteral) {
+                    final String literal = condition.right.getStringForRow(null, -1);
+                    switch (op) {
+                        case EQ:
+                            return (leftTable, leftRow, rightTable, rightRow) ->
+                                    leftTable.vectors.get(leftColumn).getString(leftRow).equals(literal);
+                        case NE:
+                            return (leftTable, leftRow, rightTable, rightRow) ->
+                                    !leftTable.vectors.get(leftColumn).getString(leftRow).equals(literal);
+                        default:
+                            return failing("Unexpected operation type for comparison: " + op);
+                    }
+                } else if (condition.right instanceof ResolvedColumn) {
+                    final int rightColumn = ((ResolvedColumn) condition.right).columnIndex;
+                    switch (op) {
+                        case EQ:
+                            return (leftTable, leftRow, rightTable, rightRow) ->
+                                    leftTable.vectors.get(leftColumn).getString(leftRow)
+                                            .equals(rightTable.vectors.get(rightColumn).getString(rightRow));
+                        case NE:
+                            return (leftTable, leftRow, rightTable, rightRow) ->
+                                    !leftTable.vectors.get(leftColumn).getString(leftRow)
+                                            .equals(rightTable.vectors.get(rightColumn).getString(rightRow));
+                        default:
+                            return failing("Unexpected operation type for comparison: " + op);
+                    }
+                }
+                return condition::evaluateTerms;
+            default:
+                return failing("Unexpected SQL type for comparison: " + condition.type);
+        }
+    }
+
+    /**
+     * A condition that can't be evaluated.  It only fails once it's actually evaluated on a row, as the switch it
+     * replaces did.
+     */
+    static CompiledCondition failing(final String message) {
+        return (leftTable, leftRow, rightTable, rightRow) -> {
+            throw new RuntimeException(message);
+        };
+    }
+}
@@ -0,0 +1,92 @@
+package sql_evaluator;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Evaluates a list of conditions that must all hold, stopping at the first one that fails.  The conditions are
+ * reordered as rows are evaluated, so that those most likely to reject a row for the least work run first: every
+ * {@link #REORDER_INTERVAL} evaluations they're sorted by cost / (1 - observed pass rate).
+ *
+ * Conditions that can't be evaluated (see {@link ResolvedCondition#isEvaluable}) always stay first, in their original
+ * order, so a query using one still fails on the first row it evaluates, with the same error as before.
+ *
+ * A conjunction keeps statistics as it goes, so it isn't thread-safe: each thread (or batch) needs its own.
+ */
+final class Conjunction {
+
+    static final int REORDER_INTERVAL = 1024;
+
+    private final Slot[] slots;
+    private final int fixedSlots;  // the leading slots, which are never reordered
+    private int untilReorder = REORDER_INTERVAL;
+
+    Conjunction(final List<ResolvedCondition> conditions) {
+        this.slots = new Slot[conditions.size()];
+        int slot = 0;
+        for (ResolvedCondition condition : conditions) {
+            if (!condition.isEvaluable()) {
+                slots[slot++] = new Slot(condition);
+            }
+        }
+        this.fixedSlots = slot;
+        for (ResolvedCondition condition : conditions) {
+            if (condition.isEvaluable()) {
+                slots[slot++] = new Slot(condition);
+            }
+        }
+    }
+
+    boolean matches(final Table leftTable, final int leftRow, final Table rightTable, final int rightRow) {
+        if (slots.length - fixedSlots > 1 && --untilReorder == 0) {
+            reorder();
+        }
+
+        for (Slot slot : slots) {
+            slot.evaluated++;
+            if (!slot.condition.evaluate(leftTable, leftRow, rightTable, rightRow)) {
+                return false;
+            }
+            slot.passed++;
+        }
+        return true;
+    }
+
+    private void reorder() {
+        untilReorder = REORDER_INTERVAL;
+        for (int i = fixedSlots; i < slots.length; i++) {
+            Slot slot = slots[i];
+            // smoothed, so a condition that hasn't been evaluated yet (or has never failed) still gets a finite rank
+            double passRate = (slot.passed + 1.0) / (slot.evaluated + 2.0);
+            slot.rank = slot.cost / (1 - passRate);
+            // older observations count for less, so the order follows the data if it changes
+            slot.evaluated /= 2;
+            slot.passed /= 2;
+        }
+        Arrays.sort(slots, fixedSlots, slots.length, Comparator.comparingDouble((Slot slot) -> slot.rank));
+    }
+
+    private static final class Slot {
+        final ResolvedCondition condition;
+        final double cost;
+        int evaluated = 0;
+        int passed = 0;
+        double rank;
+
+        Slot(final ResolvedCondition condition) {
+            this.condition = condition;
+            this.cost = costOf(condition.left) + costOf(condition.right);
+        }
+
+        /**
+         * The relative cost of reading a term: literals are free, and comparing strings is dearer than comparing ints.
+         */
+        private static double costOf(final ResolvedTerm term) {
+            if (term instanceof ResolvedLiteral) {
+                return 0;
+            }
+            return term.type == SqlType.STR ? 4 : 1;
+        }
+    }
+}
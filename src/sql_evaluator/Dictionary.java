@@ -0,0 +1,54 @@
+package sql_evaluator;
+
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * The distinct values of a dictionary-coded STR column (see {@link ColumnVector#dictionary}), in code order, along
+ * with the code of each value, so that a literal's code is found without searching the values.  It's shared by every
+ * vector selected or copied from the column, and never changes once the column is built.
+ */
+public final class Dictionary extends AbstractList<String> implements RandomAccess {
+    private final List<String> values;
+    private final Map<String, Integer> codesByValue;
+
+    /**
+     * A dictionary of {@code values}, where {@code codesByValue} maps each of them to its position.
+     */
+    Dictionary(final List<String> values, final Map<String, Integer> codesByValue) {
+        this.values = values;
+        this.codesByValue = codesByValue;
+    }
+
+    /**
+     * A dictionary of {@code values}, which must be distinct.
+     */
+    static Dictionary of(final List<String> values) {
+        Map<String, Integer> codesByValue = new HashMap<>();
+        for (int code = 0; code < values.size(); code++) {
+            codesByValue.put(values.get(code), code);
+        }
+        return new Dictionary(values, codesByValue);
+    }
+
+    @Override
+    public String get(final int code) {
+        return values.get(code);
+    }
+
+    @Override
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * The code of {@code value}, or -1 (which no cell has) if it isn't in the dictionary.
+     */
+    int codeOf(final String value) {
+        Integer code = codesByValue.get(value);
+        return code != null ? code : -1;
+    }
+}
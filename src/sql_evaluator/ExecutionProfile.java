@@ -0,0 +1,149 @@
+package sql_evaluator;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * What each operator of a query did as it ran: the rows it read and produced (and the rows the planner expected it to
+ * produce), how long it took, how much it allocated, and operator-specific counters such as the size of a hash
+ * table.  An operator that runs on several threads at once (the stages of a {@link Pipeline}) adds up the time and
+ * allocations of all of them, so its time can be more than the query's.
+ *
+ * A query is only profiled when it's given a profile; see {@link #explain} and {@link #writeJson} for the output.
+ */
+final class ExecutionProfile {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean ALLOCATION_SUPPORTED = enableAllocationTracking();
+
+    private final List<Operator> operators = new ArrayList<>();
+
+    /**
+     * Adds an operator, after all those added so far.  {@code estimatedRows} is NaN if there's no estimate.
+     */
+    synchronized Operator add(final String name, final double estimatedRows) {
+        Operator operator = new Operator(name, estimatedRows);
+        operators.add(operator);
+        return operator;
+    }
+
+    /**
+     * The plan as text, one operator per line, with the estimated and actual number of rows each produced.
+     */
+    synchronized String explain() {
+        int nameWidth = 0;
+        for (Operator operator : operators) {
+            nameWidth = Math.max(nameWidth, operator.name.length());
+        }
+
+        StringBuilder out = new StringBuilder();
+        for (Operator operator : operators) {
+            out.append(String.format("%-" + nameWidth + "s  rows=%d", operator.name, operator.outputRows.get()));
+            if (!Double.isNaN(operator.estimatedRows)) {
+                out.append(String.format(" (estimated %.0f)", operator.estimatedRows));
+            }
+            if (operator.inputRows.get() >= 0) {
+                out.append(" from ").append(operator.inputRows.get());
+            }
+            out.append(String.format("  time=%.3fms", operator.nanos.get() / 1e6));
+            if (ALLOCATION_SUPPORTED) {
+                out.append("  allocated=").append(operator.allocatedBytes.get()).append('B');
+            }
+            for (Map.Entry<String, Long> counter : operator.counters().entrySet()) {
+                out.append("  ").append(counter.getKey()).append('=').append(counter.getValue());
+            }
+            out.append('\n');
+        }
+        return out.toString();
+    }
+
+    /**
+     * Writes the profile as a JSON array with an object per operator.
+     */
+    synchronized void writeJson(final Writer out) throws IOException {
+        List<Map<String, Object>> json = new ArrayList<>();
+        for (Operator operator : operators) {
+            Map<String, Object> operatorJson = new LinkedHashMap<>();
+            operatorJson.put("operator", operator.name);
+            operatorJson.put("estimatedRows", Double.isNaN(operator.estimatedRows) ? null : operator.estimatedRows);
+            operatorJson.put("inputRows", operator.inputRows.get() >= 0 ? operator.inputRows.get() : null);
+            operatorJson.put("outputRows", operator.outputRows.get());
+            operatorJson.put("timeNanos", operator.nanos.get());
+            operatorJson.put("allocatedBytes", ALLOCATION_SUPPORTED ? operator.allocatedBytes.get() : null);
+            operatorJson.putAll(operator.counters());
+            json.add(operatorJson);
+        }
+        JacksonUtil.writeIndented(out, json);
+    }
+
+    /**
+     * The number of bytes the current thread has allocated so far, or 0 if the JVM can't tell.
+     */
+    static long threadAllocatedBytes() {
+        if (!ALLOCATION_SUPPORTED) {
+            return 0;
+        }
+        return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static boolean enableAllocationTracking() {
+        if (!(THREADS instanceof com.sun.management.ThreadMXBean)) {
+            return false;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return false;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        return true;
+    }
+
+    /**
+     * One operator's measurements.  They're updated atomically, so the threads running it can all record to it.
+     */
+    static final class Operator {
+        final String name;
+        final double estimatedRows;
+        private final AtomicLong inputRows = new AtomicLong(-1);  // -1 until recorded, for operators with no input
+        private final AtomicLong outputRows = new AtomicLong();
+        private final AtomicLong nanos = new AtomicLong();
+        private final AtomicLong allocatedBytes = new AtomicLong();
+        private final Map<String, Long> counters = new LinkedHashMap<>();
+
+        private Operator(final String name, final double estimatedRows) {
+            this.name = name;
+            this.estimatedRows = estimatedRows;
+        }
+
+        /**
+         * Records a piece of the operator's work, which started at {@code startNanos} (from {@code System.nanoTime})
+         * when the thread had allocated {@code startAllocatedBytes} (from {@link #threadAllocatedBytes}).  Pass -1
+         * as the input rows of an operator that doesn't have any.
+         */
+        void record(final long inputRows, final long outputRows, final long startNanos,
+                    final long startAllocatedBytes) {
+            if (inputRows >= 0) {
+                this.inputRows.compareAndSet(-1, 0);
+                this.inputRows.addAndGet(inputRows);
+            }
+            this.outputRows.addAndGet(outputRows);
+            nanos.addAndGet(System.nanoTime() - startNanos);
+            allocatedBytes.addAndGet(threadAllocatedBytes() - startAllocatedBytes);
+        }
+
+        synchronized void setCounter(final String name, final long value) {
+            counters.put(name, value);
+        }
+
+        private synchronized Map<String, Long> counters() {
+            return new LinkedHashMap<>(counters);
+        }
+    }
+}
@@ -1,35 +1,305 @@
 package sql_evaluator;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 final class Executor {
 
-    static Table executeQuery(final List<Table> tables, final Query query) {
-        Table outputTable = null;
+    // below this many row pairs, sorting for a merge join costs more than checking every pair in a nested loop
+    private static final long MIN_MERGE_JOIN_PAIRS = 1 << 12;
+
+    // a table at least this large is streamed through a hash join with the tables joined before it, rather than
+    // indexed, if they're estimated to have JOINED_BUILD_RATIO times fewer rows than it
+    private static final int MIN_JOINED_BUILD_ROWS = 1 << 14;
+    private static final double JOINED_BUILD_RATIO = 4;
+
+    /**
+     * Executes the query, streaming its output rows into {@code sink}.  Every table is filtered up front, and the
+     * first table in the join order then drives a {@link Pipeline} through the joins with the rest.
+     */
+    static void executeQuery(final List<Table> tables, final Query query, final RowSink sink) throws IOException {
+        executeQuery(tables, null, query, sink, null);
+    }
+
+    /**
+     * Like {@link #executeQuery(List, Query, RowSink)}, except that if {@code scan} isn't null, one of the tables is
+     * the {@link TableScan#sample} of a scan that hasn't been read to the end.  That table drives the pipeline, and the
+     * rest of its rows are streamed from the scan (and filtered as they're parsed) instead of being loaded.
+     *
+     * If {@code profile} isn't null, each operator's work is recorded in it.
+     */
+    static void executeQuery(final List<Table> tables, final TableScan scan, final Query query, final RowSink sink,
+                             final ExecutionProfile profile) throws IOException {
+        List<Table> filteredTables = new ArrayList<>();
+        Table filteredSample = null;
         for (Table table : tables) {
+            long startNanos = System.nanoTime();
+            long startAllocated = profile != null ? ExecutionProfile.threadAllocatedBytes() : 0;
             Table filteredTable = performFilter(table, query.where);
+            if (profile != null) {
+                List<ResolvedCondition> conditions = getFilterConditions(table.columns, query.where);
+                profile.add("filter " + describe(table, conditions, table.columns, null),
+                            Planner.estimateFilteredRows(table, conditions))
+                       .record(table.rowCount, filteredTable.rowCount, startNanos, startAllocated);
+            }
+            filteredTables.add(filteredTable);
+            if (scan != null && table == scan.sample) {
+                filteredSample = filteredTable;
+                scan.setFilterConditions(getFilterConditions(table.columns, query.where));
+            }
+        }
 
-            if (outputTable == null) {
-                outputTable = filteredTable;
-            } else {
-                outputTable = performJoin(outputTable, filteredTable, query.where);
+        executeFilteredQuery(filteredTables, filteredSample, scan, query, sink, profile);
+    }
+
+    /**
+     * Like {@link #executeQuery(List, Query, RowSink)}, for tables that have already been filtered on the query's
+     * filter conditions.
+     */
+    static void executeFilteredQuery(final List<Table> filteredTables, final Query query, final RowSink sink)
+            throws IOException {
+        executeFilteredQuery(filteredTables, null, null, query, sink, null);
+    }
+
+    private static void executeFilteredQuery(final List<Table> filteredTables, final Table filteredSample,
+                                             final TableScan scan, final Query query, final RowSink sink,
+                                             final ExecutionProfile profile) throws IOException {
+        Planner.JoinOrder joinOrder;
+        if (filteredSample != null) {
+            double filteredFraction = (double) filteredSample.rowCount / Math.max(1, scan.sample.rowCount);
+            joinOrder = Planner.chooseJoinOrder(filteredSample, scan.estimatedRowCount * filteredFraction,
+                                                filteredTables, query.where);
+        } else {
+            joinOrder = Planner.chooseJoinOrder(filteredTables, query.where);
+        }
+
+        Table source = joinOrder.tables.get(0);
+        List<Table> tables = new ArrayList<>(joinOrder.tables.subList(1, joinOrder.tables.size()));
+        double[] estimatedRows = joinOrder.estimatedRows;
+        if (filteredSample == null) {
+            int buildIndex;
+            while ((buildIndex = chooseJoinedBuildSide(source, tables, estimatedRows, query.where)) >= 0) {
+                // join the tables before the much larger one first, then stream that one through a hash join with them
+                Table table = tables.get(buildIndex);
+                TableSink joinedSink = new TableSink(table.rowCount);
+                runPipeline(source, null, tables.subList(0, buildIndex), estimatedRows, query, null, joinedSink,
+                            profile);
+                Table joined = joinedSink.table();
+                if (joined == null) {
+                    // there were more joined rows than the table has, after all; join the table as planned
+                    break;
+                }
+
+                List<Table> remainingTables = new ArrayList<>();
+                remainingTables.add(joined);
+                remainingTables.addAll(tables.subList(buildIndex + 1, tables.size()));
+                double[] remainingEstimates = new double[remainingTables.size() + 1];
+                remainingEstimates[0] = table.rowCount;
+                System.arraycopy(estimatedRows, buildIndex + 1, remainingEstimates, 1, remainingTables.size());
+                source = table;
+                tables = remainingTables;
+                estimatedRows = remainingEstimates;
+            }
+        }
+
+        List<Selector> selectors = query.select;
+        RowSink outputSink = sink;
+        if (!query.orderBy.isEmpty()) {
+            // the sort keys are output after the selected columns, for the sort to read and then drop
+            selectors = new ArrayList<>(query.select);
+            int[] keyColumns = new int[query.orderBy.size()];
+            boolean[] descending = new boolean[query.orderBy.size()];
+            for (int i = 0; i < query.orderBy.size(); i++) {
+                SortKey key = query.orderBy.get(i);
+                keyColumns[i] = selectors.size();
+                descending[i] = key.descending;
+                selectors.add(new Selector(key.column.name, getSortSource(query.select, key)));
             }
+            outputSink = new SortSink(sink, query.select.size(), keyColumns, descending, query.limit);
+        } else if (query.limit != null) {
+            outputSink = new LimitSink(sink, query.limit);
         }
 
-        return outputTable.select(query.select);
+        runPipeline(source, filteredSample != null ? scan : null, tables, estimatedRows, query, selectors, outputSink,
+                    profile);
+    }
+
+    /**
+     * The column a sort key orders by: if it's the unqualified name of an output column, that column's source, and
+     * otherwise the column of one of the tables that it refers to.
+     */
+    static ColumnRef getSortSource(final List<Selector> selectors, final SortKey key) {
+        if (key.column.table == null) {
+            for (Selector selector : selectors) {
+                if (selector.name.equals(key.column.name)) {
+                    return selector.source;
+                }
+            }
+        }
+        return key.column;
+    }
+
+    /**
+     * Returns the index in {@code tables} of the first one that would be hash joined with a much smaller input (the
+     * join of {@code source} and the tables before it), or -1 if there isn't one.  Rather than building a hash table
+     * over all of its rows, it's better to build one over the smaller input and stream the table through that.
+     * Joining the first table with {@code source} is left as the planner chose it.
+     */
+    private static int chooseJoinedBuildSide(final Table source, final List<Table> tables,
+                                             final double[] estimatedRows, final List<Condition> conditions) {
+        if (tables.size() < 2) {
+            return -1;
+        }
+
+        List<Table.ColumnDef> joinedColumns = new ArrayList<>(source.columns);
+        joinedColumns.addAll(tables.get(0).columns);
+        for (int i = 1; i < tables.size(); i++) {
+            Table table = tables.get(i);
+            if (table.rowCount >= MIN_JOINED_BUILD_ROWS
+                    && estimatedRows[i] * JOINED_BUILD_RATIO <= table.rowCount
+                    && hasEqualityCondition(getJoinConditions(joinedColumns, table.columns, conditions))) {
+                return i;
+            }
+            joinedColumns.addAll(table.columns);
+        }
+        return -1;
+    }
+
+    private static boolean hasEqualityCondition(final List<ResolvedCondition> conditions) {
+        for (ResolvedCondition condition : conditions) {
+            if (condition.op == Condition.Op.EQ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs a pipeline streaming {@code source} (followed by the rest of {@code scan}'s rows, if it isn't null) through
+     * the joins with {@code tables} into {@code sink}.  {@code estimatedRows[i]} is the estimated size of the join of
+     * the source and the first {@code i} tables.  If {@code selectors} is null, the sink is given every column of
+     * the joined rows.
+     */
+    private static void runPipeline(final Table source, final TableScan scan, final List<Table> tables,
+                                    final double[] estimatedRows, final Query query, final List<Selector> selectors,
+                                    final RowSink sink, final ExecutionProfile profile) throws IOException {
+        List<Table.ColumnDef> joinedColumns = new ArrayList<>(source.columns);
+        List<JoinStage> stages = new ArrayList<>();
+        for (int i = 0; i < tables.size(); i++) {
+            Table table = tables.get(i);
+            // a streamed source's order is only known for its sample, so it can't be merged on its sort order
+            Table first = i == 0 && scan == null ? source : null;
+            stages.add(planJoin(joinedColumns, first, estimatedRows[i], table, query.where));
+            joinedColumns.addAll(table.columns);
+        }
+
+        Pipeline pipeline = new Pipeline(source, scan, stages, joinedColumns, selectors);
+        if (profile != null) {
+            ExecutionProfile.Operator sourceOperator = profile.add(
+                    (scan != null ? "stream " : "scan ") + describe(source, new ArrayList<>(), null, null),
+                    estimatedRows[0]);
+            List<ExecutionProfile.Operator> stageOperators = new ArrayList<>();
+            List<Table.ColumnDef> stageColumns = new ArrayList<>(source.columns);
+            for (int i = 0; i < tables.size(); i++) {
+                Table table = tables.get(i);
+                JoinStage stage = stages.get(i);
+                List<ResolvedCondition> conditions = getJoinConditions(stageColumns, table.columns, query.where);
+                ExecutionProfile.Operator stageOperator = profile.add(
+                        stage.strategy() + " " + describe(table, conditions, stageColumns, table.columns),
+                        estimatedRows[i + 1]);
+                stage.recordIndexStats(stageOperator);
+                stageOperators.add(stageOperator);
+                stageColumns.addAll(table.columns);
+            }
+            ExecutionProfile.Operator outputOperator = profile.add(
+                    selectors != null ? "output" : "materialize", estimatedRows[tables.size()]);
+            pipeline.setProfile(sourceOperator, stageOperators, outputOperator);
+        }
+        pipeline.run(sink);
+    }
+
+    /**
+     * Describes a table (by its name in the query) and the conditions on it for a profile, e.g. "c (c.id = u.city)".
+     * The left term of each condition is one of {@code leftColumns}, and a column on the right is one of
+     * {@code rightColumns}.
+     */
+    private static String describe(final Table table, final List<ResolvedCondition> conditions,
+                                   final List<Table.ColumnDef> leftColumns, final List<Table.ColumnDef> rightColumns) {
+        String description = describeQualifiers(table);
+        return conditions.isEmpty() ? description
+                : description + " (" + describe(conditions, leftColumns, rightColumns) + ")";
+    }
+
+    /**
+     * Describes conditions for a profile, e.g. "c.id = u.city AND c.population > 1000", with the columns of their
+     * terms looked up as in {@link #describe(Table, List, List, List)}.
+     */
+    static String describe(final List<ResolvedCondition> conditions, final List<Table.ColumnDef> leftColumns,
+                           final List<Table.ColumnDef> rightColumns) {
+        StringBuilder description = new StringBuilder();
+        for (ResolvedCondition condition : conditions) {
+            description.append(description.length() == 0 ? "" : " AND ")
+                       .append(describe(condition.left, leftColumns))
+                       .append(' ').append(condition.op.symbol).append(' ')
+                       .append(describe(condition.right, rightColumns));
+        }
+        return description.toString();
+    }
+
+    /**
+     * The name of a table in the query, or if it's the join of several, their names, e.g. "(c, u)".
+     */
+    private static String describeQualifiers(final Table table) {
+        List<String> qualifiers = new ArrayList<>();
+        for (Table.ColumnDef columnDef : table.columns) {
+            if (!qualifiers.contains(columnDef.qualifier)) {
+                qualifiers.add(columnDef.qualifier);
+            }
+        }
+        if (qualifiers.isEmpty()) {
+            return "?";
+        }
+        return qualifiers.size() == 1 ? qualifiers.get(0) : "(" + String.join(", ", qualifiers) + ")";
+    }
+
+    private static String describe(final ResolvedTerm term, final List<Table.ColumnDef> columns) {
+        if (term instanceof ResolvedColumn) {
+            Table.ColumnDef columnDef = columns.get(((ResolvedColumn) term).columnIndex);
+            return columnDef.qualifier + "." + columnDef.name;
+        }
+        return JacksonUtil.toString(((ResolvedLiteral) term).value);
     }
 
     private static Table performFilter(final Table table, final List<Condition> conditions) {
-        List<ResolvedCondition> filterConditions = getFilterConditions(table, conditions);
+        List<ResolvedCondition> filterConditions = getFilterConditions(table.columns, conditions);
         return table.filter(filterConditions);
     }
 
-    private static List<ResolvedCondition> getFilterConditions(final Table table, final List<Condition> conditions) {
+    /**
+     * Returns the filter conditions on a table with the given columns that can be checked while it's being loaded
+     * (see {@link TableScan#setFilterConditions}), before the query has been validated.  If any of the table's
+     * filter conditions can't be evaluated (it compares different types, or uses an operator its type doesn't
+     * support), none are returned, so that the error is reported when the table is filtered, just as it would be
+     * without pushdown.
+     */
+    static List<ResolvedCondition> getPushdownConditions(final List<Table.ColumnDef> columns,
+                                                         final List<Condition> conditions) {
+        List<ResolvedCondition> filterConditions = getFilterConditions(columns, conditions);
+        for (ResolvedCondition condition : filterConditions) {
+            if (!condition.isEvaluable()) {
+                return new ArrayList<>();
+            }
+        }
+        return filterConditions;
+    }
+
+    static List<ResolvedCondition> getFilterConditions(final List<Table.ColumnDef> columns,
+                                                       final List<Condition> conditions) {
         List<ResolvedCondition> resolvedConditions = new ArrayList<>();
         for (Condition condition : conditions) {
-            Optional<ResolvedCondition> resolvedCondition = getFilterConditionIfApplicable(table, condition);
+            Optional<ResolvedCondition> resolvedCondition = getFilterConditionIfApplicable(columns, condition);
             resolvedCondition.ifPresent(resolvedConditions::add);
         }
 
@@ -39,15 +309,15 @@ final class Executor {
     /**
      * returns a resolved condition if both tables are referenced in the condition, otherwise an empty optional
      */
-    private static Optional<ResolvedCondition> getFilterConditionIfApplicable(final Table first,
+    private static Optional<ResolvedCondition> getFilterConditionIfApplicable(final List<Table.ColumnDef> first,
                                                                               final Condition condition) {
         // Only support expressions with the column reference on the left-hand side
         if (condition.left instanceof Term.Column && condition.right instanceof Term.Literal) {
             ColumnRef leftColumnRef = ((Term.Column) condition.left).ref;
             ResolvedColumn leftTerm = null;
             ResolvedLiteral rightTerm = null;
-            for (int i = 0; i < first.columns.size(); i++) {
-                Table.ColumnDef columnDef = first.columns.get(i);
+            for (int i = 0; i < first.size(); i++) {
+                Table.ColumnDef columnDef = first.get(i);
                 if (columnDef.matchesReference(leftColumnRef)) {
                     leftTerm = new ResolvedColumn(i, columnDef.type);
                     rightTerm = ResolvedLiteral.fromLiteral((Term.Literal) condition.right);
@@ -65,8 +335,14 @@ final class Executor {
         }
     }
 
-    private static Table performJoin(final Table first, final Table second, final List<Condition> conditions) {
-        List<ResolvedCondition> joinConditions = getJoinConditions(first, second, conditions);
+    /**
+     * Chooses how to join rows with the given columns (estimated at {@code estimatedRows} rows in all) with
+     * {@code second}.  {@code first} is the table the rows come from, if they all come from one table, or null.
+     */
+    private static JoinStage planJoin(final List<Table.ColumnDef> firstColumns, final Table first,
+                                      final double estimatedRows, final Table second,
+                                      final List<Condition> conditions) {
+        List<ResolvedCondition> joinConditions = getJoinConditions(firstColumns, second.columns, conditions);
         if (joinConditions.size() > 0) {
             ResolvedCondition indexCondition = null;
             for (ResolvedCondition joinCondition : joinConditions) {
@@ -78,21 +354,45 @@ final class Executor {
 
             if (indexCondition != null) {
                 joinConditions.remove(indexCondition);
-                return first.hashJoin(second, indexCondition, joinConditions);
+                if (first != null
+                        && MergeJoin.isRangeOrEquality(indexCondition)
+                        && MergeJoin.isSorted(first, indexCondition.left)
+                        && MergeJoin.isSorted(second, indexCondition.right)) {
+                    // both inputs are already in key order, so merging them is cheaper than building a hash table
+                    return new JoinStage.Merge(second, indexCondition, joinConditions);
+                }
+                return new JoinStage.Hash(second, indexCondition, joinConditions);
+            }
+
+            ResolvedCondition rangeCondition = null;
+            for (ResolvedCondition joinCondition : joinConditions) {
+                if (MergeJoin.isRangeOrEquality(joinCondition)) {
+                    rangeCondition = joinCondition;
+                    break;
+                }
+            }
+
+            if (rangeCondition != null && estimatedRows * second.rowCount >= MIN_MERGE_JOIN_PAIRS) {
+                joinConditions.remove(rangeCondition);
+                return new JoinStage.Merge(second, rangeCondition, joinConditions);
             } else {
                 // perform nested loop join when there is at least one condition
-                return first.innerJoin(second, joinConditions);
+                return new JoinStage.NestedLoop(second, joinConditions);
             }
         } else {
             // perform cross join when there is no condition to join on
-            return first.crossJoin(second);
+            return new JoinStage.Cross(second);
         }
     }
 
-    // find best initial join, perform it, then find subsequent best join using the output table as the input
-    // heuristic for best join: perform join with most conditions that apply first (since the result set will be smaller)
-    private static List<ResolvedCondition> getJoinConditions(final Table first, final Table second,
-                                                             final List<Condition> conditions) {
+    static List<ResolvedCondition> getJoinConditions(final Table first, final Table second,
+                                                     final List<Condition> conditions) {
+        return getJoinConditions(first.columns, second.columns, conditions);
+    }
+
+    static List<ResolvedCondition> getJoinConditions(final List<Table.ColumnDef> first,
+                                                     final List<Table.ColumnDef> second,
+                                                     final List<Condition> conditions) {
         List<ResolvedCondition> resolvedConditions = new ArrayList<>();
         for (Condition condition : conditions) {
             Optional<ResolvedCondition> resolvedCondition = getJoinConditionIfApplicable(first, second, condition);
@@ -105,7 +405,8 @@ final class Executor {
     /**
      * returns a resolved condition if both tables are referenced in the condition, otherwise an empty optional
      */
-    private static Optional<ResolvedCondition> getJoinConditionIfApplicable(final Table first, final Table second,
+    private static Optional<ResolvedCondition> getJoinConditionIfApplicable(final List<Table.ColumnDef> first,
+                                                                            final List<Table.ColumnDef> second,
                                                                             final Condition condition) {
         if (condition.left instanceof Term.Column && condition.right instanceof Term.Column) {
             ColumnRef leftColumnRef = ((Term.Column) condition.left).ref;
@@ -113,8 +414,8 @@ final class Executor {
             ResolvedColumn leftTerm = null;
             ResolvedColumn rightTerm = null;
             Condition.Op op = condition.op;
-            for (int i = 0; i < first.columns.size(); i++) {
-                Table.ColumnDef columnDef = first.columns.get(i);
+            for (int i = 0; i < first.size(); i++) {
+                Table.ColumnDef columnDef = first.get(i);
                 if (columnDef.matchesReference(leftColumnRef)) {
                     leftTerm = new ResolvedColumn(i, columnDef.type);
                 } else if (columnDef.matchesReference(rightColumnRef)) {
@@ -125,8 +426,8 @@ final class Executor {
                 }
             }
 
-            for (int i = 0; i < second.columns.size(); i++) {
-                Table.ColumnDef columnDef = second.columns.get(i);
+            for (int i = 0; i < second.size(); i++) {
+                Table.ColumnDef columnDef = second.get(i);
                 if (columnDef.matchesReference(leftColumnRef) || columnDef.matchesReference(rightColumnRef)) {
                     rightTerm = new ResolvedColumn(i, columnDef.type);
                 }
@@ -0,0 +1,235 @@
+package sql_evaluator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Filters a table a chunk of rows at a time.  Conditions comparing an INT column with a literal are run as kernels:
+ * the chunk's cells are copied into an {@code int[]}, and each kernel narrows a selection vector of the chunk's
+ * matching rows with a tight loop, one per operator, that has no branch on the comparison's outcome (the position is
+ * always written, and the count only advanced if it matched).  So are "=" and "!=" on a dictionary-coded STR column,
+ * by comparing the cells' codes with the literal's code.  The other conditions are then checked, through a
+ * {@link Conjunction}, on just the rows the kernels kept.
+ *
+ * A table with {@link SortedIndex indexes} isn't scanned at all if one of them finds few enough rows for a condition.
+ * One with {@link ZoneMap zone maps} skips the chunks in which they show no row can pass a kernel's condition.
+ */
+final class FilterKernels {
+
+    static final int CHUNK_SIZE = 1024;
+
+    // an index is only used to find the rows for a filter if at most this fraction of the table's rows pass its
+    // condition; reading more rows out of order costs more than scanning them all in order
+    private static final double MAX_INDEXED_FRACTION = 1.0 / 8;
+
+    private FilterKernels() {
+    }
+
+    /**
+     * Returns the rows of {@code table} that match all of {@code conditions} (single-table filters), in order.
+     */
+    static IntList matchingRows(final Table table, final List<ResolvedCondition> conditions) {
+        List<ResolvedCondition> kernelConditions = new ArrayList<>();
+        List<ResolvedCondition> otherConditions = new ArrayList<>();
+        for (ResolvedCondition condition : conditions) {
+            if (!condition.isEvaluable()) {
+                // leave the conjunction to fail the way it would have without kernels (or indexes)
+                kernelConditions.clear();
+                otherConditions = conditions;
+                break;
+            }
+            if (isKernelCondition(table, condition)) {
+                kernelConditions.add(condition);
+            } else {
+                otherConditions.add(condition);
+            }
+        }
+
+        if (otherConditions != conditions) {
+            IntList indexedRows = indexedMatchingRows(table, conditions);
+            if (indexedRows != null) {
+                return indexedRows;
+            }
+        }
+
+        Conjunction conjunction = new Conjunction(otherConditions);
+        IntList matchingRows = new IntList();
+        if (kernelConditions.isEmpty()) {
+            for (int row = 0; row < table.rowCount; row++) {
+                if (conjunction.matches(table, row, null, -1)) {
+                    matchingRows.add(row);
+                }
+            }
+            return matchingRows;
+        }
+
+        int[] literals = new int[kernelConditions.size()];
+        for (int k = 0; k < literals.length; k++) {
+            literals[k] = kernelLiteral(table, kernelConditions.get(k));
+        }
+
+        ZoneMap.Pruner pruner = ZoneMap.Pruner.create(table, kernelConditions, literals);
+        int[] values = new int[CHUNK_SIZE];
+        int[] selection = new int[CHUNK_SIZE];
+        for (int start = 0; start < table.rowCount; start += CHUNK_SIZE) {
+            if (pruner != null && !pruner.mayMatch(start / CHUNK_SIZE)) {
+                continue;
+            }
+            int count = Math.min(CHUNK_SIZE, table.rowCount - start);
+            for (int i = 0; i < count; i++) {
+                selection[i] = i;
+            }
+
+            int selected = count;
+            for (int k = 0; k < literals.length; k++) {
+                ResolvedCondition condition = kernelConditions.get(k);
+                if (condition.type == SqlType.INT) {
+                    vectorOf(table, condition).getInts(start, count, values);
+                } else {
+                    vectorOf(table, condition).getCodes(start, count, values);
+                }
+                selected = select(condition.op, values, literals[k], selection, selected);
+                if (selected == 0) {
+                    break;
+                }
+            }
+
+            for (int i = 0; i < selected; i++) {
+                int row = start + selection[i];
+                if (conjunction.matches(table, row, null, -1)) {
+                    matchingRows.add(row);
+                }
+            }
+        }
+        return matchingRows;
+    }
+
+    /**
+     * If some of the conditions compare a column that has a {@link SortedIndex} with literals, and the index finds few
+     * enough rows passing all of them that it's worth skipping the scan (the fewest, if several columns can), returns
+     * the rows matching all of the conditions, found by checking the others on just those rows.  Otherwise returns
+     * null.  The conditions must all be {@link ResolvedCondition#isEvaluable evaluable}.
+     */
+    static IntList indexedMatchingRows(final Table table, final List<ResolvedCondition> conditions) {
+        // the rows passing every condition on each indexed column, and those conditions
+        Map<Integer, SortedIndex.Range> ranges = new HashMap<>();
+        Map<Integer, List<ResolvedCondition>> indexedConditions = new HashMap<>();
+        for (ResolvedCondition condition : conditions) {
+            if (!(condition.left instanceof ResolvedColumn) || !(condition.right instanceof ResolvedLiteral)) {
+                continue;
+            }
+            int column = ((ResolvedColumn) condition.left).columnIndex;
+            SortedIndex index = table.sortedIndex(column);
+            SortedIndex.Range range = index != null
+                    ? index.find(vectorOf(table, condition), condition.op, (ResolvedLiteral) condition.right)
+                    : null;
+            if (range != null) {
+                ranges.merge(column, range, SortedIndex.Range::intersect);
+                indexedConditions.computeIfAbsent(column, c -> new ArrayList<>()).add(condition);
+            }
+        }
+
+        Integer bestColumn = null;
+        for (Map.Entry<Integer, SortedIndex.Range> range : ranges.entrySet()) {
+            if (bestColumn == null || range.getValue().size() < ranges.get(bestColumn).size()) {
+                bestColumn = range.getKey();
+            }
+        }
+        if (bestColumn == null || ranges.get(bestColumn).size() > table.rowCount * MAX_INDEXED_FRACTION) {
+            return null;
+        }
+
+        SortedIndex.Range bestRange = ranges.get(bestColumn);
+        List<ResolvedCondition> otherConditions = new ArrayList<>(conditions);
+        otherConditions.removeAll(indexedConditions.get(bestColumn));
+        Conjunction conjunction = new Conjunction(otherConditions);
+        IntList matchingRows = new IntList(bestRange.size());
+        for (int row : bestRange.rows()) {
+            if (conjunction.matches(table, row, null, -1)) {
+                matchingRows.add(row);
+            }
+        }
+        return matchingRows;
+    }
+
+    /**
+     * Whether a kernel can check the condition, which must be {@link ResolvedCondition#isEvaluable evaluable}: it
+     * compares an INT column, or a dictionary-coded STR column, with a literal.
+     */
+    static boolean isKernelCondition(final Table table, final ResolvedCondition condition) {
+        return condition.left instanceof ResolvedColumn && condition.right instanceof ResolvedLiteral
+                && (condition.type == SqlType.INT || vectorOf(table, condition).dictionary() != null);
+    }
+
+    /**
+     * The value a kernel compares a condition's column with: an INT literal itself, or a STR literal's code in the
+     * column's dictionary (-1, which no cell has, if it isn't in it).
+     */
+    static int kernelLiteral(final Table table, final ResolvedCondition condition) {
+        return condition.type == SqlType.INT
+                ? condition.right.getIntForRow(null, -1)
+                : vectorOf(table, condition).dictionary().codeOf(condition.right.getStringForRow(null, -1));
+    }
+
+    private static ColumnVector vectorOf(final Table table, final ResolvedCondition condition) {
+        return table.vectors.get(((ResolvedColumn) condition.left).columnIndex);
+    }
+
+    /**
+     * Keeps the first {@code count} positions in {@code selection} whose values pass {@code op literal}, in order,
+     * and returns how many were kept.
+     */
+    static int select(final Condition.Op op, final int[] values, final int literal, final int[] selection,
+                      final int count) {
+        int selected = 0;
+        switch (op) {
+            case EQ:
+                for (int i = 0; i < count; i++) {
+                    int position = selection[i];
+                    selection[selected] = position;
+                    selected += values[position] == literal ? 1 : 0;
+                }
+                break;
+            case NE:
+                for (int i = 0; i < count; i++) {
+                    int position = selection[i];
+                    selection[selected] = position;
+                    selected += values[position] != literal ? 1 : 0;
+                }
+                break;
+            case LT:
+                for (int i = 0; i < count; i++) {
+                    int position = selection[i];
+                    selection[selected] = position;
+                    selected += values[position] < literal ? 1 : 0;
+                }
+                break;
+            case LE:
+                for (int i = 0; i < count; i++) {
+                    int position = selection[i];
+                    selection[selected] = position;
+                    selected += values[position] <= literal ? 1 : 0;
+                }
+                break;
+            case GT:
+                for (int i = 0; i < count; i++) {
+                    int position = selection[i];
+                    selection[selected] = position;
+                    selected += values[position] > literal ? 1 : 0;
+                }
+                break;
+            case GE:
+                for (int i = 0; i < count; i++) {
+                    int position = selection[i];
+                    selection[selected] = position;
+                    selected += values[position] >= literal ? 1 : 0;
+                }
+                break;
+            default:
+                throw new RuntimeException("Unexpected operation type for comparison: " + op);
+        }
+        return selected;
+    }
+}
@@ -0,0 +1,369 @@
+package sql_evaluator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * The hash join behind {@link Table#hashJoin}.
+ *
+ * The build side is indexed once, by {@link #build}, and can then be probed by any number of batches of rows.  A
+ * large build side is indexed on several threads: its rows are radix-partitioned on the hash of their key and each
+ * partition gets its own hash table, built independently.  Probing a key only looks at the key's partition.  Small
+ * build sides are indexed as a single partition on the calling thread.
+ *
+ * INT keys are indexed with an {@link IntJoinHashTable}; other keys with a {@code HashMap}.  A STR key column with a
+ * dictionary is indexed on its dictionary codes, in an {@code IntJoinHashTable} too.  Probing it translates each
+ * probe-side code to the build side's code for the same string (looking each one up only once, the first time it's
+ * probed), so it compares ints rather than strings.
+ */
+final class HashJoin {
+
+    // below this many build rows, partitioning and scheduling cost more than they save
+    static final int MIN_PARALLEL_ROWS = 1 << 16;
+
+    // more partitions than threads, so one large partition doesn't leave the other threads idle
+    private static final int PARTITIONS_PER_THREAD = 4;
+
+    private static final int UNTRANSLATED = -2;
+
+    /**
+     * The build side of a hash join: every row of {@code table}, indexed on {@code key}.
+     */
+    static final class Index {
+        final Table table;
+        final ResolvedTerm key;
+        private final int partitionBits;
+        private final List<IntJoinHashTable> intPartitions;
+        private final List<Map<Object, IntList>> objectPartitions;
+
+        // for a dictionary-coded STR key: the build side's dictionary
+        private final Dictionary dictionary;
+        // translations from the dictionaries of large probe tables, which are shared by many probed batches
+        private final Map<Dictionary, int[]> translations = new IdentityHashMap<>();
+
+        private Index(final Table table, final ResolvedTerm key, final int partitionBits,
+                      final List<IntJoinHashTable> intPartitions, final List<Map<Object, IntList>> objectPartitions,
+                      final Dictionary dictionary) {
+            this.table = table;
+            this.key = key;
+            this.partitionBits = partitionBits;
+            this.intPartitions = intPartitions;
+            this.objectPartitions = objectPartitions;
+            this.dictionary = dictionary;
+        }
+
+        /**
+         * The number of distinct keys in the index.
+         */
+        int keyCount() {
+            int keyCount = 0;
+            if (intPartitions != null) {
+                for (IntJoinHashTable partition : intPartitions) {
+                    keyCount += partition.keyCount();
+                }
+            } else {
+                for (Map<Object, IntList> partition : objectPartitions) {
+                    keyCount += partition.size();
+                }
+            }
+            return keyCount;
+        }
+
+        /**
+         * The number of slots passed over while building the index, or -1 if it isn't known (for a
+         * {@code HashMap}).
+         */
+        long collisions() {
+            if (intPartitions == null) {
+                return -1;
+            }
+            long collisions = 0;
+            for (IntJoinHashTable partition : intPartitions) {
+                collisions += partition.collisions();
+            }
+            return collisions;
+        }
+
+        int partitionCount() {
+            return 1 << partitionBits;
+        }
+
+        /**
+         * Returns a table from the codes of {@code probeDictionary} to build-side codes, to be filled in by
+         * {@link #buildCode}, or null if the probe side uses the build side's dictionary.
+         */
+        private int[] translation(final Dictionary probeDictionary, final int probeRows) {
+            if (probeDictionary == dictionary) {
+                return null;
+            }
+            if (probeDictionary.size() <= 4 * probeRows) {
+                // a batch's own dictionary, which isn't worth keeping
+                return newTranslation(probeDictionary.size());
+            }
+            synchronized (translations) {
+                return translations.computeIfAbsent(probeDictionary, d -> newTranslation(d.size()));
+            }
+        }
+
+        private static int[] newTranslation(final int size) {
+            int[] translation = new int[size];
+            Arrays.fill(translation, UNTRANSLATED);
+            return translation;
+        }
+
+        /**
+         * The build-side code of the string with code {@code probeCode} in {@code probeDictionary}, or -1 if the
+         * build side doesn't have it.
+         */
+        private int buildCode(final int probeCode, final int[] translation, final Dictionary probeDictionary) {
+            if (translation == null) {
+                return probeCode;
+            }
+            int code = translation[probeCode];
+            if (code == UNTRANSLATED) {
+                // shared translations are filled in concurrently, but every thread writes the same value
+                code = dictionary.codeOf(probeDictionary.get(probeCode));
+                translation[probeCode] = code;
+            }
+            return code;
+        }
+    }
+
+    static Index build(final Table table, final ResolvedTerm key) {
+        final Dictionary dictionary = key.type == SqlType.STR && key instanceof ResolvedColumn
+                ? table.vectors.get(((ResolvedColumn) key).columnIndex).dictionary()
+                : null;
+        final boolean intKeyed = key.type == SqlType.INT || dictionary != null;
+        final int partitionBits;
+        final Partitions partitions;
+        if (Parallelism.THREADS <= 1 || table.rowCount < MIN_PARALLEL_ROWS) {
+            partitionBits = 0;
+            partitions = Partitions.single(table.rowCount);
+        } else {
+            partitionBits = 32 - Integer.numberOfLeadingZeros(Parallelism.THREADS * PARTITIONS_PER_THREAD - 1);
+            partitions = partition(table, key, intKeyed, partitionBits);
+        }
+
+        if (intKeyed) {
+            List<Callable<IntJoinHashTable>> tasks = new ArrayList<>();
+            for (int p = 0; p < (1 << partitionBits); p++) {
+                final int partition = p;
+                tasks.add(() -> buildIntPartition(table, key, partitions, partition));
+            }
+            return new Index(table, key, partitionBits, invokeAll(tasks, partitionBits), null, dictionary);
+        } else {
+            List<Callable<Map<Object, IntList>>> tasks = new ArrayList<>();
+            for (int p = 0; p < (1 << partitionBits); p++) {
+                final int partition = p;
+                tasks.add(() -> buildObjectPartition(table, key, partitions, partition));
+            }
+            return new Index(table, key, partitionBits, null, invokeAll(tasks, partitionBits), null);
+        }
+    }
+
+    private static IntJoinHashTable buildIntPartition(final Table table, final ResolvedTerm key,
+                                                      final Partitions partitions, final int partition) {
+        int start = partitions.starts[partition];
+        int end = partitions.starts[partition + 1];
+        IntJoinHashTable index = new IntJoinHashTable(end - start);
+        // insert backwards, so the rows for each key come back out in build-side row order
+        for (int i = end - 1; i >= start; i--) {
+            int row = partitions.rows[i];
+            index.insert(intKey(table, key, row), row);
+        }
+        return index;
+    }
+
+    /**
+     * The key of a build row as an int: an INT key itself, or a dictionary-coded STR key's code.
+     */
+    private static int intKey(final Table table, final ResolvedTerm key, final int row) {
+        return key.type == SqlType.INT ? key.getIntForRow(table, row)
+                                       : table.vectors.get(((ResolvedColumn) key).columnIndex).getCode(row);
+    }
+
+    private static Map<Object, IntList> buildObjectPartition(final Table table, final ResolvedTerm key,
+                                                             final Partitions partitions, final int partition) {
+        Map<Object, IntList> index = new HashMap<>();
+        for (int i = partitions.starts[partition]; i < partitions.starts[partition + 1]; i++) {
+            int row = partitions.rows[i];
+            Object value = key.getValueForRow(table, row);
+            IntList rowList = index.get(value);
+            if (rowList == null) {
+                rowList = new IntList(1);
+                index.put(value, rowList);
+            }
+            rowList.add(row);
+        }
+        return index;
+    }
+
+    /**
+     * Looks up every row of {@code probe} (whose key is {@code probeKey}) in the index, and returns the matching
+     * {probe row, build row} pairs that also pass the remaining conditions (with the probe row on the left).
+     * Pairs come out in probe row order.
+     */
+    static IntList[] probe(final Table probe, final ResolvedTerm probeKey, final Index index,
+                           final List<ResolvedCondition> remainingConditions) {
+        Conjunction remaining = new Conjunction(remainingConditions);
+        IntList probeRows = new IntList();
+        IntList buildRows = new IntList();
+        if (index.intPartitions != null) {
+            ColumnVector probeVector = index.dictionary != null && probeKey instanceof ResolvedColumn
+                    ? probe.vectors.get(((ResolvedColumn) probeKey).columnIndex)
+                    : null;
+            Dictionary probeDictionary = probeVector != null ? probeVector.dictionary() : null;
+            int[] translation = probeDictionary != null ? index.translation(probeDictionary, probe.rowCount) : null;
+            for (int probeRow = 0; probeRow < probe.rowCount; probeRow++) {
+                int key;
+                if (index.dictionary == null) {
+                    key = probeKey.getIntForRow(probe, probeRow);
+                } else if (probeDictionary != null) {
+                    key = index.buildCode(probeVector.getCode(probeRow), translation, probeDictionary);
+                } else {
+                    key = index.dictionary.codeOf(probeKey.getStringForRow(probe, probeRow));
+                }
+                if (index.dictionary != null && key < 0) {
+                    continue;  // the build side doesn't have the string
+                }
+                IntJoinHashTable partition = index.intPartitions.get(partitionOf(key, index.partitionBits));
+                for (int entry = partition.find(key); entry >= 0; entry = partition.next(entry)) {
+                    int buildRow = partition.row(entry);
+                    if (remaining.matches(probe, probeRow, index.table, buildRow)) {
+                        probeRows.add(probeRow);
+                        buildRows.add(buildRow);
+                    }
+                }
+            }
+        } else {
+            for (int probeRow = 0; probeRow < probe.rowCount; probeRow++) {
+                Object key = probeKey.getValueForRow(probe, probeRow);
+                IntList matchingRows = index.objectPartitions.get(partitionOf(key.hashCode(), index.partitionBits))
+                                                             .get(key);
+                if (matchingRows == null) {
+                    continue;
+                }
+                for (int i = 0; i < matchingRows.size(); i++) {
+                    int buildRow = matchingRows.get(i);
+                    if (remaining.matches(probe, probeRow, index.table, buildRow)) {
+                        probeRows.add(probeRow);
+                        buildRows.add(buildRow);
+                    }
+                }
+            }
+        }
+
+        return new IntList[] { probeRows, buildRows };
+    }
+
+    private static int partitionOf(final int hash, final int partitionBits) {
+        // the shift is by 32 (a no-op in Java) when there's a single partition, hence the special case
+        return partitionBits == 0 ? 0 : (hash * 0x9E3779B9) >>> (32 - partitionBits);
+    }
+
+    private static <T> List<T> invokeAll(final List<Callable<T>> tasks, final int partitionBits) {
+        if (partitionBits == 0) {
+            List<T> results = new ArrayList<>();
+            try {
+                results.add(tasks.get(0).call());
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            return results;
+        }
+        return Parallelism.invokeAll(tasks);
+    }
+
+    /**
+     * The rows of a table grouped by partition: the rows of partition {@code p} are
+     * {@code rows[starts[p]] .. rows[starts[p + 1] - 1]}, in increasing order.
+     */
+    private static final class Partitions {
+        final int[] rows;
+        final int[] starts;
+
+        Partitions(final int[] rows, final int[] starts) {
+            this.rows = rows;
+            this.starts = starts;
+        }
+
+        /**
+         * All of the rows in a single partition.
+         */
+        static Partitions single(final int rowCount) {
+            int[] rows = new int[rowCount];
+            for (int row = 0; row < rowCount; row++) {
+                rows[row] = row;
+            }
+            return new Partitions(rows, new int[] { 0, rowCount });
+        }
+    }
+
+    /**
+     * Radix-partitions the rows of {@code table} on the top bits of their key's hash.  Each thread histograms and then
+     * scatters one contiguous chunk of rows; chunk offsets within each partition follow the chunk order, so every
+     * partition ends up sorted by row.
+     */
+    private static Partitions partition(final Table table, final ResolvedTerm key, final boolean intKeyed,
+                                        final int partitionBits) {
+        final int partitionCount = 1 << partitionBits;
+        final int chunkCount = Parallelism.THREADS;
+        final int rowCount = table.rowCount;
+        final int[] partitionOfRow = new int[rowCount];
+        final int[][] counts = new int[chunkCount][partitionCount];
+
+        List<Callable<Void>> histogramTasks = new ArrayList<>();
+        for (int c = 0; c < chunkCount; c++) {
+            final int chunk = c;
+            histogramTasks.add(() -> {
+                for (int row = chunkStart(chunk, chunkCount, rowCount); row < chunkStart(chunk + 1, chunkCount, rowCount); row++) {
+                    int hash = intKeyed ? intKey(table, key, row) : key.getValueForRow(table, row).hashCode();
+                    int partition = partitionOf(hash, partitionBits);
+                    partitionOfRow[row] = partition;
+                    counts[chunk][partition]++;
+                }
+                return null;
+            });
+        }
+        Parallelism.invokeAll(histogramTasks);
+
+        final int[] starts = new int[partitionCount + 1];
+        final int[][] offsets = new int[chunkCount][partitionCount];
+        int offset = 0;
+        for (int p = 0; p < partitionCount; p++) {
+            starts[p] = offset;
+            for (int c = 0; c < chunkCount; c++) {
+                offsets[c][p] = offset;
+                offset += counts[c][p];
+            }
+        }
+        starts[partitionCount] = offset;
+
+        final int[] rows = new int[rowCount];
+        List<Callable<Void>> scatterTasks = new ArrayList<>();
+        for (int c = 0; c < chunkCount; c++) {
+            final int chunk = c;
+            scatterTasks.add(() -> {
+                int[] chunkOffsets = offsets[chunk];
+                for (int row = chunkStart(chunk, chunkCount, rowCount); row < chunkStart(chunk + 1, chunkCount, rowCount); row++) {
+                    rows[chunkOffsets[partitionOfRow[row]]++] = row;
+                }
+                return null;
+            });
+        }
+        Parallelism.invokeAll(scatterTasks);
+
+        return new Partitions(rows, starts);
+    }
+
+    private static int chunkStart(final int chunk, final int chunkCount, final int rowCount) {
+        return (int) ((long) chunk * rowCount / chunkCount);
+    }
+}
@@ -0,0 +1,60 @@
+package sql_evaluator;
+
+/**
+ * A HyperLogLog sketch for estimating the number of distinct values in a column in a single pass and constant
+ * memory.
+ */
+final class HyperLogLog {
+    private static final int PRECISION = 12;
+    private static final int REGISTER_COUNT = 1 << PRECISION;
+
+    private final byte[] registers = new byte[REGISTER_COUNT];
+
+    void addInt(final int value) {
+        addHash(mix(value));
+    }
+
+    void addString(final String value) {
+        addHash(mix(value.hashCode()));
+    }
+
+    private void addHash(final long hash) {
+        int register = (int) (hash >>> (64 - PRECISION));
+        // position of the first set bit in the remaining bits; the sentinel bit caps it at 64 - PRECISION + 1
+        int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+        if (rank > registers[register]) {
+            registers[register] = (byte) rank;
+        }
+    }
+
+    long estimate() {
+        double sum = 0;
+        int emptyRegisters = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                emptyRegisters++;
+            }
+        }
+
+        double alpha = 0.7213 / (1 + 1.079 / REGISTER_COUNT);
+        double estimate = alpha * REGISTER_COUNT * REGISTER_COUNT / sum;
+        if (estimate <= 2.5 * REGISTER_COUNT && emptyRegisters > 0) {
+            // small-range correction: linear counting is more accurate while many registers are still empty
+            estimate = REGISTER_COUNT * Math.log((double) REGISTER_COUNT / emptyRegisters);
+        }
+
+        return Math.round(estimate);
+    }
+
+    // finalizer from MurmurHash3, spreads the bits of a 32-bit value over a 64-bit hash
+    private static long mix(final int value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
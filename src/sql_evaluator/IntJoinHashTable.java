@@ -0,0 +1,100 @@
+package sql_evaluator;
+
+import java.util.Arrays;
+
+/**
+ * The build side of a hash join on an INT key.  Keys live in an open-addressing (linear probing) table of primitive
+ * ints, and all the build rows sharing a key are chained together through an array of entry indices, so building
+ * and probing never box a key or allocate per key.
+ */
+final class IntJoinHashTable {
+    private final int[] slotKeys;
+    private final int[] slotHeads;  // first entry with the slot's key, or -1 if the slot is empty
+    private final int mask;
+
+    private final int[] entryRows;
+    private final int[] entryNext;  // next entry with the same key, or -1
+    private int entryCount = 0;
+
+    private int keyCount = 0;
+    private long collisions = 0;  // slots passed over while inserting, because they held another key
+
+    IntJoinHashTable(final int expectedRows) {
+        // keep the load factor at or below 1/2
+        int slotCount = Integer.highestOneBit(Math.max(8, expectedRows) * 2 - 1) << 1;
+        this.slotKeys = new int[slotCount];
+        this.slotHeads = new int[slotCount];
+        Arrays.fill(slotHeads, -1);
+        this.mask = slotCount - 1;
+        this.entryRows = new int[expectedRows];
+        this.entryNext = new int[expectedRows];
+    }
+
+    /**
+     * Adds a build row.  Rows with the same key come back from {@link #find} in the reverse of the order they were
+     * inserted.
+     */
+    void insert(final int key, final int row) {
+        int slot = slotFor(key);
+        while (slotHeads[slot] >= 0 && slotKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+            collisions++;
+        }
+        if (slotHeads[slot] < 0) {
+            keyCount++;
+        }
+
+        int entry = entryCount++;
+        entryRows[entry] = row;
+        entryNext[entry] = slotHeads[slot];
+        slotKeys[slot] = key;
+        slotHeads[slot] = entry;
+    }
+
+    /**
+     * Returns the first entry with the given key, or -1 if there isn't one.  Use {@link #row} to get the entry's build
+     * row and {@link #next} to move on to the next entry with the same key.
+     */
+    int find(final int key) {
+        int slot = slotFor(key);
+        while (slotHeads[slot] >= 0) {
+            if (slotKeys[slot] == key) {
+                return slotHeads[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    int row(final int entry) {
+        return entryRows[entry];
+    }
+
+    int next(final int entry) {
+        return entryNext[entry];
+    }
+
+    int size() {
+        return entryCount;
+    }
+
+    int keyCount() {
+        return keyCount;
+    }
+
+    long collisions() {
+        return collisions;
+    }
+
+    private int slotFor(final int key) {
+        // finalizer from MurmurHash3; independent of the multiplicative hash used to pick a HashJoin partition, so
+        // the keys of a single partition still spread over all the slots
+        int h = key;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h & mask;
+    }
+}
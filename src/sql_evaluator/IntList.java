@@ -0,0 +1,42 @@
+package sql_evaluator;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive ints, used to collect row positions without boxing.
+ */
+final class IntList {
+    private int[] elements;
+    private int size;
+
+    IntList() {
+        this(16);
+    }
+
+    IntList(final int initialCapacity) {
+        this.elements = new int[Math.max(initialCapacity, 1)];
+        this.size = 0;
+    }
+
+    void add(final int value) {
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, size * 2);
+        }
+        elements[size++] = value;
+    }
+
+    int get(final int index) {
+        return elements[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the backing array; only the first {@link #size()} entries are meaningful.
+     */
+    int[] elements() {
+        return elements;
+    }
+}
@@ -0,0 +1,59 @@
+package sql_evaluator;
+
+import java.util.Arrays;
+
+/**
+ * An INT column backed by a plain {@code int[]}.
+ */
+public final class IntVector extends ColumnVector {
+    final int[] values;
+    private final int size;
+
+    public IntVector(final int[] values, final int size) {
+        super(SqlType.INT);
+        this.values = values;
+        this.size = size;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int estimateDistinctCount() {
+        // without statistics, assume a key-like column
+        return size;
+    }
+
+    @Override
+    public Object getValue(final int row) {
+        return getInt(row);
+    }
+
+    @Override
+    public int getInt(final int row) {
+        return values[row];
+    }
+
+    @Override
+    public void getInts(final int from, final int count, final int[] dest) {
+        System.arraycopy(values, from, dest, 0, count);
+    }
+
+    public static final class Builder {
+        private int[] values = new int[16];
+        private int size = 0;
+
+        public void add(final int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        public IntVector build() {
+            return new IntVector(values, size);
+        }
+    }
+}
@@ -2,11 +2,13 @@ package sql_evaluator;
 
 import com.fasterxml.jackson.core.*;
 import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.StringWriter;
 import java.io.Writer;
@@ -85,6 +87,23 @@ public final class JacksonUtil {
         out.write('\n');
     }
 
+    /** Returns a parser for the file, not yet advanced to its first token. */
+    public static JsonParser createParser(String path) throws IOException {
+        return objectMapper.getFactory().createParser(new File(path));
+    }
+
+    /** Returns a generator writing compact JSON to {@code out}, with nothing between top-level values. */
+    public static JsonGenerator createGenerator(Writer out) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.setRootValueSeparator(null);
+        return generator;
+    }
+
+    /** Reads a sequence of JSON values, one after another (and optionally whitespace-separated), from a stream. */
+    public static <T> MappingIterator<T> readValues(InputStream in, Class<T> cls) throws IOException {
+        return objectMapper.readerFor(cls).readValues(in);
+    }
+
     public static <T> T readFromFile(String path, Class<T> cls) throws IOException {
         JsonParser jp = objectMapper.getFactory().createParser(new File(path));
         T value = objectMapper.readValue(jp, cls);
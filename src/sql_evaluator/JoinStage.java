@@ -0,0 +1,131 @@
+package sql_evaluator;
+
+import java.util.List;
+
+/**
+ * Joins each batch of rows flowing through a {@link Pipeline} with one table.  The table is indexed (if at all) when
+ * the stage is created, so joining a batch only reads it; stages can join several batches at once on different
+ * threads.
+ */
+abstract class JoinStage {
+
+    /**
+     * Returns the rows of {@code batch} joined with the stage's table: the batch's columns followed by the table's.
+     */
+    abstract Table join(Table batch);
+
+    /**
+     * How the stage joins, e.g. "hash join".
+     */
+    abstract String strategy();
+
+    /**
+     * Sets counters describing the stage's index (if it has one) on the stage's operator in a profile.
+     */
+    void recordIndexStats(final ExecutionProfile.Operator operator) {
+    }
+
+    /**
+     * Probes a hash table built on the table's side of an equality condition.
+     */
+    static final class Hash extends JoinStage {
+        private final HashJoin.Index index;
+        private final ResolvedTerm probeKey;
+        private final List<ResolvedCondition> remainingConditions;
+
+        Hash(final Table table, final ResolvedCondition indexCondition,
+             final List<ResolvedCondition> remainingConditions) {
+            this.index = HashJoin.build(table, indexCondition.right);
+            this.probeKey = indexCondition.left;
+            this.remainingConditions = remainingConditions;
+        }
+
+        @Override
+        Table join(final Table batch) {
+            return batch.hashJoin(index, probeKey, remainingConditions);
+        }
+
+        @Override
+        String strategy() {
+            return "hash join";
+        }
+
+        @Override
+        void recordIndexStats(final ExecutionProfile.Operator operator) {
+            operator.setCounter("hashTableRows", index.table.rowCount);
+            operator.setCounter("hashTableKeys", index.keyCount());
+            operator.setCounter("hashTablePartitions", index.partitionCount());
+            if (index.collisions() >= 0) {
+                operator.setCounter("hashTableCollisions", index.collisions());
+            }
+        }
+    }
+
+    /**
+     * Searches the table sorted on its side of an INT range or equality condition.
+     */
+    static final class Merge extends JoinStage {
+        private final MergeJoin.Index index;
+        private final List<ResolvedCondition> remainingConditions;
+
+        Merge(final Table table, final ResolvedCondition indexCondition,
+              final List<ResolvedCondition> remainingConditions) {
+            this.index = MergeJoin.build(table, indexCondition, remainingConditions);
+            this.remainingConditions = remainingConditions;
+        }
+
+        @Override
+        Table join(final Table batch) {
+            return batch.mergeJoin(index, remainingConditions);
+        }
+
+        @Override
+        String strategy() {
+            return "merge join";
+        }
+    }
+
+    /**
+     * Checks the conditions against every pair of rows.
+     */
+    static final class NestedLoop extends JoinStage {
+        private final Table table;
+        private final List<ResolvedCondition> conditions;
+
+        NestedLoop(final Table table, final List<ResolvedCondition> conditions) {
+            this.table = table;
+            this.conditions = conditions;
+        }
+
+        @Override
+        Table join(final Table batch) {
+            return batch.innerJoin(table, conditions);
+        }
+
+        @Override
+        String strategy() {
+            return "nested loop join";
+        }
+    }
+
+    /**
+     * Pairs every row of the batch with every row of the table.
+     */
+    static final class Cross extends JoinStage {
+        private final Table table;
+
+        Cross(final Table table) {
+            this.table = table;
+        }
+
+        @Override
+        Table join(final Table batch) {
+            return batch.crossJoin(table);
+        }
+
+        @Override
+        String strategy() {
+            return "cross join";
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package sql_evaluator;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Passes the first {@code limit} rows it's given on to another sink and drops the rest.  It's {@link #isDone done}
+ * as soon as it has them all, so a pipeline feeding it stops reading its source (and probing its joins) early.
+ */
+final class LimitSink implements RowSink {
+    private final RowSink sink;
+    private final int limit;
+    private int rowCount = 0;
+
+    LimitSink(final RowSink sink, final int limit) {
+        this.sink = sink;
+        this.limit = limit;
+    }
+
+    @Override
+    public void begin(final List<Table.ColumnDef> columns) throws IOException {
+        sink.begin(columns);
+    }
+
+    @Override
+    public void accept(final Table batch) throws IOException {
+        int remaining = limit - rowCount;
+        if (remaining <= 0) {
+            return;
+        }
+
+        Table rows = batch;
+        if (batch.rowCount > remaining) {
+            int[] positions = new int[remaining];
+            for (int i = 0; i < remaining; i++) {
+                positions[i] = i;
+            }
+            rows = new Table(batch.columns, SelectedVector.selectAll(batch.vectors, positions, remaining), remaining);
+        }
+        rowCount += rows.rowCount;
+        sink.accept(rows);
+    }
+
+    @Override
+    public boolean isDone() {
+        return rowCount >= limit || sink.isDone();
+    }
+
+    @Override
+    public void end() throws IOException {
+        sink.end();
+    }
+}
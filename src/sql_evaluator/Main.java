@@ -1,7 +1,9 @@
 package sql_evaluator;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.FileWriter;
 import java.io.File;
@@ -9,15 +11,51 @@ import java.io.Writer;
 import java.util.*;
 
 public final class Main {
+    // large output files are written in chunks this big
+    static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
     public static void main(String[] args) throws IOException {
-        if (args.length != 3) {
-            System.err.println("Usage: COMMAND <table-folder> <sql-json-file> <output-file>");
+        if (args.length == 2 && args[0].equals("--server")) {
+            new QueryServer(args[1]).serve(System.in, System.out);
+            return;
+        }
+
+        if (args.length >= 3 && args[0].equals("--batch")) {
+            boolean success = new BatchRunner(args[1]).run(Arrays.asList(args).subList(2, args.length));
+            if (!success) {
+                System.exit(1);
+            }
+            return;
+        }
+
+        // "--explain" prints the plan (with estimated and actual row counts) once the query has run, and
+        // "--profile <file>" writes the same execution profile as JSON
+        boolean explain = false;
+        String profileFile = null;
+        int argIndex = 0;
+        while (argIndex < args.length) {
+            if (args[argIndex].equals("--explain")) {
+                explain = true;
+                argIndex++;
+            } else if (args[argIndex].equals("--profile") && argIndex + 1 < args.length) {
+                profileFile = args[argIndex + 1];
+                argIndex += 2;
+            } else {
+                break;
+            }
+        }
+
+        if (args.length - argIndex != 3) {
+            System.err.println("Usage: COMMAND [--explain] [--profile <profile-json-file>] <table-folder> <sql-json-file> <output-file>");
+            System.err.println("       COMMAND --server <table-folder>");
+            System.err.println("       COMMAND --batch <table-folder> <sql-json-file>...");
             System.exit(1); return;
         }
 
-        String tableFolder = args[0];
-        String sqlJsonFile = args[1];
-        String outputFile = args[2];
+        String tableFolder = args[argIndex];
+        String sqlJsonFile = args[argIndex + 1];
+        String outputFile = args[argIndex + 2];
+        ExecutionProfile profile = explain || profileFile != null ? new ExecutionProfile() : null;
 
         Query query;
         try {
@@ -27,45 +65,204 @@ public final class Main {
             System.exit(1); return;
         }
 
+        // the largest table file, if it's too large to comfortably load, is streamed instead (unless it can be mapped)
+        int streamedIndex = -1;
+        long streamedSize = TableScan.STREAM_THRESHOLD - 1;
+        for (int i = 0; i < query.from.size(); i++) {
+            String tableSourcePath = getTableSourcePath(tableFolder, query.from.get(i));
+            long size = new File(tableSourcePath).length();
+            if (size > streamedSize && !hasCurrentBinaryTable(tableSourcePath)) {
+                streamedIndex = i;
+                streamedSize = size;
+            }
+        }
+
         ArrayList<Table> tables = new ArrayList<>();
-        for (TableDecl tableDecl : query.from) {
-            String tableSourcePath = tableFolder + File.separator + (tableDecl.source + ".table.json");
+        TableScan scan = null;
+        String scanSourcePath = null;
+        for (int i = 0; i < query.from.size(); i++) {
+            TableDecl tableDecl = query.from.get(i);
+            String tableSourcePath = getTableSourcePath(tableFolder, tableDecl);
+            long startNanos = System.nanoTime();
+            long startAllocated = profile != null ? ExecutionProfile.threadAllocatedBytes() : 0;
             Table table;
+            long parsedRowCount;
+            List<ResolvedCondition> pushdownConditions = new ArrayList<>();
+            if (hasCurrentBinaryTable(tableSourcePath)) {
+                String binaryPath = BinaryTable.binaryPath(tableSourcePath);
+                try {
+                    table = BinaryTable.map(binaryPath);
+                } catch (IOException ex) {
+                    System.err.println("Error loading \"" + binaryPath + "\" as a binary table: " + ex.getMessage());
+                    System.exit(1); return;
+                }
+                try {
+                    table = SortedIndex.attach(table, tableSourcePath);
+                } catch (IOException ex) {
+                    System.err.println("Error loading \"" + SortedIndex.indexPath(tableSourcePath) + "\" as an index: "
+                                       + ex.getMessage());
+                    System.exit(1); return;
+                }
+                table.setQualifier(tableDecl.name);
+                if (profile != null) {
+                    profile.add("map " + tableDecl.name + " (" + binaryPath + ")", Double.NaN)
+                           .record(-1, table.rowCount, startNanos, startAllocated);
+                }
+                tables.add(table);
+                continue;
+            }
+
             try {
-                table = JacksonUtil.readFromFile(tableSourcePath, Table.class);
+                TableScan tableScan = TableScan.open(tableSourcePath);
+                tableScan.setQualifier(tableDecl.name);
+                if (i == streamedIndex) {
+                    // the sample is read unfiltered, to estimate how selective the filters are
+                    tableScan.readSample(tableSourcePath);
+                    scan = tableScan;
+                    scanSourcePath = tableSourcePath;
+                    table = scan.sample;
+                } else {
+                    try {
+                        // filter as the rows are parsed, so rows that don't match are never loaded
+                        pushdownConditions = Executor.getPushdownConditions(tableScan.columns, query.where);
+                        tableScan.setFilterConditions(pushdownConditions);
+                        table = tableScan.read(Integer.MAX_VALUE, true);
+                    } finally {
+                        tableScan.close();
+                    }
+                }
+                parsedRowCount = tableScan.parsedRowCount;
             } catch (JsonProcessingException ex) {
                 System.err.println("Error loading \"" + tableSourcePath + "\" as table JSON: " + ex.getMessage());
                 System.exit(1); return;
             }
-            table.setQualifier(tableDecl.name);
+            if (profile != null) {
+                // the rows parsed are the load's input, of which only those matching the pushed-down filter are kept
+                String operator = i == streamedIndex ? "sample " : "load ";
+                String filter = pushdownConditions.isEmpty() ? ""
+                        : " where " + Executor.describe(pushdownConditions, table.columns, null);
+                profile.add(operator + tableDecl.name + " (" + tableSourcePath + ")" + filter, Double.NaN)
+                       .record(parsedRowCount, table.rowCount, startNanos, startAllocated);
+            }
             tables.add(table);
         }
 
         try {
             Validator.checkQueryValidity(tables, query);
-            Table outputTable = Executor.executeQuery(tables, query);
-            try (FileWriter out = new FileWriter(outputFile)) {
-                writeTable(out, outputTable);
+            try (Writer out = new BufferedWriter(new FileWriter(outputFile), OUTPUT_BUFFER_SIZE)) {
+                Executor.executeQuery(tables, scan, query, new WriterSink(out), profile);
             }
         } catch (RuntimeException e) {
+            // overwrites any rows already written before the error
             try (FileWriter out = new FileWriter(outputFile)) {
                 out.write(e.getMessage());
             }
+        } catch (JsonProcessingException ex) {
+            // only the streamed table is still being parsed during execution
+            new File(outputFile).delete();
+            System.err.println("Error loading \"" + scanSourcePath + "\" as table JSON: " + ex.getMessage());
+            System.exit(1); return;
+        } finally {
+            if (scan != null) {
+                scan.close();
+            }
+        }
+
+        if (explain) {
+            System.out.print(profile.explain());
+        }
+        if (profileFile != null) {
+            try (FileWriter out = new FileWriter(profileFile)) {
+                profile.writeJson(out);
+            }
         }
     }
 
+    static String getTableSourcePath(final String tableFolder, final TableDecl tableDecl) {
+        return tableFolder + File.separator + (tableDecl.source + ".table.json");
+    }
+
+    /**
+     * Whether there's a ".table.bin" file (see {@link BinaryTable}) for the table that's at least as new as its
+     * ".table.json" file (if it has one).
+     */
+    static boolean hasCurrentBinaryTable(final String tableSourcePath) {
+        File jsonFile = new File(tableSourcePath);
+        File binaryFile = new File(BinaryTable.binaryPath(tableSourcePath));
+        return binaryFile.isFile() && (!jsonFile.exists() || binaryFile.lastModified() >= jsonFile.lastModified());
+    }
+
 
     public static void writeTable(Writer out, Table table) throws IOException {
-        out.write("[\n");
+        WriterSink sink = new WriterSink(out);
+        sink.begin(table.columns);
+        sink.accept(table);
+        sink.end();
+    }
+
+    /**
+     * Writes rows in the output file format as they arrive, through a single {@code JsonGenerator} that reads each
+     * cell straight from its column vector.  Output reaches the writer as the generator's buffer fills, and everything
+     * is flushed to it by {@link #end}.
+     */
+    static final class WriterSink implements RowSink {
+        private final Writer out;
+        private JsonGenerator generator;
+
+        WriterSink(final Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void begin(final List<Table.ColumnDef> columns) throws IOException {
+            generator = JacksonUtil.createGenerator(out);
+            generator.writeRaw("[\n    ");
+            generator.writeStartArray();
+            for (Table.ColumnDef columnDef : columns) {
+                generator.writeObject(columnDef);
+            }
+            generator.writeEndArray();
+        }
+
+        @Override
+        public void accept(final Table batch) throws IOException {
+            int columnCount = batch.vectors.size();
+            ColumnVector[] vectors = batch.vectors.toArray(new ColumnVector[columnCount]);
+            boolean[] isInt = new boolean[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                isInt[i] = vectors[i].type == SqlType.INT;
+            }
 
-        out.write("    ");
-        JacksonUtil.write(out, table.columns);
+            for (int row = 0; row < batch.rowCount; row++) {
+                generator.writeRaw(",\n    ");
+                generator.writeStartArray();
+                for (int i = 0; i < columnCount; i++) {
+                    if (isInt[i]) {
+                        generator.writeNumber(vectors[i].getInt(row));
+                    } else {
+                        generator.writeString(vectors[i].getString(row));
+                    }
+                }
+                generator.writeEndArray();
+            }
+        }
 
-        for (List<Object> row : table.rows) {
-            out.write(",\n    ");
-            JacksonUtil.write(out, row);
+        @Override
+        public void end() throws IOException {
+            generator.writeRaw("\n]\n");
+            generator.flush();
         }
 
-        out.write("\n]\n");
+        /**
+         * Flushes whatever has been written so far, without ending the output, and returns whether there was any
+         * (i.e. whether {@link #begin} has been called).
+         */
+        boolean flushPartial() throws IOException {
+            if (generator == null) {
+                return false;
+            }
+            generator.flush();
+            return true;
+        }
     }
 }
@@ -0,0 +1,45 @@
+package sql_evaluator;
+
+import java.nio.IntBuffer;
+
+/**
+ * An INT column read in place from a memory-mapped ".table.bin" file (see {@link BinaryTable}); cells are only paged
+ * in when they're read.
+ */
+public final class MappedIntVector extends ColumnVector {
+    private final IntBuffer values;
+
+    public MappedIntVector(final IntBuffer values) {
+        super(SqlType.INT);
+        this.values = values;
+    }
+
+    @Override
+    public int size() {
+        return values.limit();
+    }
+
+    @Override
+    public int estimateDistinctCount() {
+        // without statistics, assume a key-like column
+        return size();
+    }
+
+    @Override
+    public Object getValue(final int row) {
+        return getInt(row);
+    }
+
+    @Override
+    public int getInt(final int row) {
+        // absolute gets don't move the buffer's position, so concurrent readers can share it
+        return values.get(row);
+    }
+
+    @Override
+    public void getInts(final int from, final int count, final int[] dest) {
+        for (int i = 0; i < count; i++) {
+            dest[i] = values.get(from + i);
+        }
+    }
+}
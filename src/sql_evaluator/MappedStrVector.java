@@ -0,0 +1,48 @@
+package sql_evaluator;
+
+import java.nio.IntBuffer;
+
+/**
+ * A STR column from a memory-mapped ".table.bin" file (see {@link BinaryTable}): the dictionary codes are read in
+ * place from the file, and only the dictionary itself is decoded into Strings when the file is mapped.
+ */
+public final class MappedStrVector extends ColumnVector {
+    private final IntBuffer codes;
+    private final Dictionary dictionary;
+
+    public MappedStrVector(final IntBuffer codes, final Dictionary dictionary) {
+        super(SqlType.STR);
+        this.codes = codes;
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public int size() {
+        return codes.limit();
+    }
+
+    @Override
+    public int estimateDistinctCount() {
+        return Math.min(dictionary.size(), size());
+    }
+
+    @Override
+    public Object getValue(final int row) {
+        return getString(row);
+    }
+
+    @Override
+    public String getString(final int row) {
+        return dictionary.get(codes.get(row));
+    }
+
+    @Override
+    public Dictionary dictionary() {
+        return dictionary;
+    }
+
+    @Override
+    public int getCode(final int row) {
+        return codes.get(row);
+    }
+}
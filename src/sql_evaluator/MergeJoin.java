@@ -0,0 +1,294 @@
+package sql_evaluator;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A sort-merge join on an INT key, for joins whose condition is a range comparison (a band join, e.g.
+ * {@code a.ts >= b.start AND a.ts < b.end}) as well as equality joins whose inputs are already sorted.
+ *
+ * The right input is sorted on its key once, by {@link #build}, and can then be probed by any number of batches of
+ * left rows.  Sorting makes the right rows satisfying {@code leftKey op rightKey} a contiguous range for every left
+ * row.  The range is found by binary search, or, when the left input is sorted on its key too, by cursors that only
+ * ever move forward (a merge).  The range is then narrowed with one other range condition on the same pair of
+ * tables, if there is one, and the rest of the conditions are checked row by row.
+ */
+final class MergeJoin {
+
+    static boolean isRangeOrEquality(final ResolvedCondition condition) {
+        return condition.type == SqlType.INT && condition.op != Condition.Op.NE;
+    }
+
+    static boolean isSorted(final Table table, final ResolvedTerm key) {
+        for (int row = 1; row < table.rowCount; row++) {
+            if (key.getIntForRow(table, row - 1) > key.getIntForRow(table, row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The right side of a merge join: every row of {@code table}, sorted on the right term of {@code condition}.
+     */
+    static final class Index {
+        final Table table;
+        final ResolvedCondition condition;
+        private final SortedRows sorted;
+        private final Band band;
+
+        private Index(final Table table, final ResolvedCondition condition, final SortedRows sorted, final Band band) {
+            this.table = table;
+            this.condition = condition;
+            this.sorted = sorted;
+            this.band = band;
+        }
+    }
+
+    /**
+     * Sorts {@code right} for joins on {@code indexCondition}, which must satisfy {@link #isRangeOrEquality}.
+     * {@code remainingConditions} are the other conditions the join will be checked against; one of them may be
+     * used to narrow the rows each left row is compared with.
+     */
+    static Index build(final Table right, final ResolvedCondition indexCondition,
+                       final List<ResolvedCondition> remainingConditions) {
+        SortedRows sorted = SortedRows.sort(right, indexCondition.right);
+        return new Index(right, indexCondition, sorted, Band.find(right, sorted, remainingConditions));
+    }
+
+    /**
+     * Joins {@code left} with the index's table and returns the matching {left row, right row} pairs, in left row
+     * order.
+     */
+    static IntList[] probe(final Table left, final Index index, final List<ResolvedCondition> remainingConditions) {
+        ResolvedCondition indexCondition = index.condition;
+        SortedRows sorted = index.sorted;
+        Band band = index.band;
+        boolean leftSorted = isSorted(left, indexCondition.left);
+        Conjunction remaining = new Conjunction(remainingConditions);
+
+        IntList leftRows = new IntList();
+        IntList rightRows = new IntList();
+        if (left.rowCount == 0) {
+            return new IntList[] { leftRows, rightRows };
+        }
+
+        // a sorted left input may be one batch out of many, so its cursors start at its first key rather than at 0
+        int lowerCursor = leftSorted ? sorted.lowerBound(indexCondition.left.getIntForRow(left, 0)) : 0;
+        int upperCursor = lowerCursor;
+        for (int leftRow = 0; leftRow < left.rowCount; leftRow++) {
+            int key = indexCondition.left.getIntForRow(left, leftRow);
+
+            // first sorted position with a key >= key, and first with a key > key
+            int lower;
+            int upper;
+            if (leftSorted) {
+                while (lowerCursor < sorted.keys.length && sorted.keys[lowerCursor] < key) {
+                    lowerCursor++;
+                }
+                upperCursor = Math.max(upperCursor, lowerCursor);
+                while (upperCursor < sorted.keys.length && sorted.keys[upperCursor] <= key) {
+                    upperCursor++;
+                }
+                lower = lowerCursor;
+                upper = upperCursor;
+            } else {
+                lower = sorted.lowerBound(key);
+                upper = sorted.upperBound(key);
+            }
+
+            int start;
+            int end;
+            switch (indexCondition.op) {
+                case EQ:
+                    start = lower;
+                    end = upper;
+                    break;
+                case LT:  // key < rightKey
+                    start = upper;
+                    end = sorted.keys.length;
+                    break;
+                case LE:
+                    start = lower;
+                    end = sorted.keys.length;
+                    break;
+                case GT:  // key > rightKey
+                    start = 0;
+                    end = lower;
+                    break;
+                case GE:
+                    start = 0;
+                    end = upper;
+                    break;
+                default:
+                    throw new RuntimeException("Unexpected operation type for merge join: " + indexCondition.op);
+            }
+
+            if (band != null && start < end) {
+                int bandKey = band.condition.left.getIntForRow(left, leftRow);
+                start = Math.max(start, band.start(bandKey));
+                end = Math.min(end, band.end(bandKey));
+            }
+
+            for (int i = start; i < end; i++) {
+                int rightRow = sorted.rows[i];
+                if (remaining.matches(left, leftRow, index.table, rightRow)) {
+                    leftRows.add(leftRow);
+                    rightRows.add(rightRow);
+                }
+            }
+        }
+
+        return new IntList[] { leftRows, rightRows };
+    }
+
+    /**
+     * The rows of a table in ascending order of an INT key: {@code rows[i]} has key {@code keys[i]}.
+     */
+    private static final class SortedRows {
+        final int[] keys;
+        final int[] rows;
+
+        private SortedRows(final int[] keys, final int[] rows) {
+            this.keys = keys;
+            this.rows = rows;
+        }
+
+        static SortedRows sort(final Table table, final ResolvedTerm key) {
+            int[] keys = new int[table.rowCount];
+            int[] rows = new int[table.rowCount];
+            if (isSorted(table, key)) {
+                for (int row = 0; row < table.rowCount; row++) {
+                    keys[row] = key.getIntForRow(table, row);
+                    rows[row] = row;
+                }
+                return new SortedRows(keys, rows);
+            }
+
+            // sort (key, row) pairs packed into longs, which orders by key and then by row without boxing
+            long[] packed = new long[table.rowCount];
+            for (int row = 0; row < table.rowCount; row++) {
+                packed[row] = ((long) key.getIntForRow(table, row) << 32) | row;
+            }
+            Arrays.sort(packed);
+            for (int i = 0; i < packed.length; i++) {
+                keys[i] = (int) (packed[i] >> 32);
+                rows[i] = (int) packed[i];
+            }
+            return new SortedRows(keys, rows);
+        }
+
+        int lowerBound(final int key) {
+            int low = 0;
+            int high = keys.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (keys[middle] < key) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        int upperBound(final int key) {
+            int low = 0;
+            int high = keys.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (keys[middle] <= key) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Narrows the range of sorted right rows using a second range condition {@code leftValue op rightValue}, whose
+     * right column isn't the sort key.
+     *
+     * If the condition needs a large right value, no row before the first sorted position whose running maximum
+     * (over the sorted order) is large enough can match.  If it needs a small right value, no row after the last
+     * position whose running minimum from the end is small enough can match.  With interval data sorted on the
+     * interval start, that cuts the candidates for {@code a.ts >= b.start AND a.ts < b.end} down to the intervals
+     * that start before {@code a.ts} and haven't all ended by then.
+     */
+    private static final class Band {
+        final ResolvedCondition condition;
+        final int[] bounds;  // running maximum from the start, or running minimum from the end; both non-decreasing
+
+        private Band(final ResolvedCondition condition, final int[] bounds) {
+            this.condition = condition;
+            this.bounds = bounds;
+        }
+
+        static Band find(final Table right, final SortedRows sorted, final List<ResolvedCondition> conditions) {
+            for (ResolvedCondition condition : conditions) {
+                if (!isRangeOrEquality(condition) || condition.op == Condition.Op.EQ) {
+                    continue;
+                }
+
+                int[] bounds = new int[sorted.rows.length];
+                boolean needsLarge = condition.op == Condition.Op.LT || condition.op == Condition.Op.LE;
+                if (needsLarge) {
+                    int max = Integer.MIN_VALUE;
+                    for (int i = 0; i < bounds.length; i++) {
+                        max = Math.max(max, condition.right.getIntForRow(right, sorted.rows[i]));
+                        bounds[i] = max;
+                    }
+                } else {
+                    int min = Integer.MAX_VALUE;
+                    for (int i = bounds.length - 1; i >= 0; i--) {
+                        min = Math.min(min, condition.right.getIntForRow(right, sorted.rows[i]));
+                        bounds[i] = min;
+                    }
+                }
+                return new Band(condition, bounds);
+            }
+            return null;
+        }
+
+        int start(final int leftValue) {
+            switch (condition.op) {
+                case LT:  // leftValue < rightValue
+                    return firstPosition(leftValue, false);
+                case LE:
+                    return firstPosition(leftValue, true);
+                default:
+                    return 0;
+            }
+        }
+
+        int end(final int leftValue) {
+            switch (condition.op) {
+                case GT:  // leftValue > rightValue
+                    return firstPosition(leftValue, true);
+                case GE:
+                    return firstPosition(leftValue, false);
+                default:
+                    return bounds.length;
+            }
+        }
+
+        /**
+         * Returns the first position whose bound is {@code >= value} (if {@code inclusive}) or {@code > value}.
+         */
+        private int firstPosition(final int value, final boolean inclusive) {
+            int low = 0;
+            int high = bounds.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (inclusive ? bounds[middle] < value : bounds[middle] <= value) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package sql_evaluator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * The thread pool shared by everything that executes in parallel.
+ */
+final class Parallelism {
+
+    /**
+     * The number of threads to use, from the "sql_evaluator.parallelism" system property.  Defaults to the number of
+     * available processors; 1 disables parallel execution.
+     */
+    static final int THREADS = Math.max(1, Integer.getInteger("sql_evaluator.parallelism",
+                                                              Runtime.getRuntime().availableProcessors()));
+
+    private static ForkJoinPool pool;
+
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(THREADS);
+        }
+        return pool;
+    }
+
+    /**
+     * Runs the tasks on the shared pool and returns their results in task order.
+     */
+    static <T> List<T> invokeAll(final List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>();
+        try {
+            for (Future<T> future : getPool().invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("ERROR: interrupted while executing the query.", e);
+        } catch (ExecutionException e) {
+            // ForkJoinTask may wrap an exception from another thread in a new one of the same type, so unwrap back to
+            // the original (its message is what ends up in the output file)
+            Throwable cause = e.getCause();
+            while (cause.getCause() != null && cause.getCause().getClass() == cause.getClass()) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+        return results;
+    }
+}
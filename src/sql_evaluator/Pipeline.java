@@ -0,0 +1,174 @@
+package sql_evaluator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Pushes the rows of a query's first table through the joins with every other table and the final projection, one
+ * batch at a time, straight into a {@link RowSink}.  Only the tables being joined with (and their join indexes) are
+ * held in memory; no intermediate join result is ever materialized in full.  The first table itself may be streamed
+ * from a {@link TableScan}.
+ *
+ * With more than one thread, batches are processed in waves of several at once and handed to the sink in order.
+ *
+ * A pipeline can be {@link #setProfile profiled}, recording the rows each part of it reads and produces.
+ */
+final class Pipeline {
+
+    static final int BATCH_SIZE = 1024;
+
+    // batches in flight per thread; more than one evens out batches that produce very different numbers of rows
+    private static final int BATCHES_PER_THREAD = 2;
+
+    private final Table source;
+    private final TableScan sourceScan;
+    private final List<JoinStage> stages;
+    private int sourceOffset = 0;
+    private final ArrayList<Table.ColumnDef> outputColumns;
+    private final int[] outputIndexes;
+
+    // null unless the pipeline is being profiled
+    private ExecutionProfile.Operator sourceOperator;
+    private List<ExecutionProfile.Operator> stageOperators;
+    private ExecutionProfile.Operator outputOperator;
+
+    /**
+     * The rows of {@code source} are followed by any rows left in {@code sourceScan}, if it isn't null.
+     * {@code joinedColumns} are the columns of a fully joined row (the source's followed by those of each stage's
+     * table), which the selectors are resolved against.  If {@code selectors} is null, the output is the fully joined
+     * rows, with all of their columns.
+     */
+    Pipeline(final Table source, final TableScan sourceScan, final List<JoinStage> stages,
+             final List<Table.ColumnDef> joinedColumns, final List<Selector> selectors) {
+        this.source = source;
+        this.sourceScan = sourceScan;
+        this.stages = stages;
+        if (selectors != null) {
+            this.outputColumns = Table.selectColumns(joinedColumns, selectors);
+            this.outputIndexes = Table.getSelectedColumnIndexes(joinedColumns, selectors);
+        } else {
+            this.outputColumns = new ArrayList<>(joinedColumns);
+            this.outputIndexes = new int[joinedColumns.size()];
+            for (int i = 0; i < outputIndexes.length; i++) {
+                outputIndexes[i] = i;
+            }
+        }
+    }
+
+    /**
+     * Records the pipeline's work in the given operators: reading source rows, each stage in order, and handing rows
+     * to the sink.
+     */
+    void setProfile(final ExecutionProfile.Operator sourceOperator, final List<ExecutionProfile.Operator> stageOperators,
+                    final ExecutionProfile.Operator outputOperator) {
+        this.sourceOperator = sourceOperator;
+        this.stageOperators = stageOperators;
+        this.outputOperator = outputOperator;
+    }
+
+    void run(final RowSink sink) throws IOException {
+        sink.begin(outputColumns);
+
+        int waveSize = Parallelism.THREADS <= 1 ? 1 : Parallelism.THREADS * BATCHES_PER_THREAD;
+        while (!sink.isDone()) {
+            // source batches are read on this thread, since a scan can only be read in order
+            List<Table> wave = new ArrayList<>();
+            while (wave.size() < waveSize) {
+                long startNanos = System.nanoTime();
+                long startAllocated = sourceOperator != null ? ExecutionProfile.threadAllocatedBytes() : 0;
+                Table batch = nextSourceBatch();
+                if (batch == null) {
+                    break;
+                }
+                if (sourceOperator != null) {
+                    sourceOperator.record(-1, batch.rowCount, startNanos, startAllocated);
+                }
+                wave.add(batch);
+            }
+
+            if (wave.isEmpty()) {
+                break;
+            } else if (wave.size() == 1) {
+                emit(sink, process(wave.get(0)));
+            } else {
+                List<Callable<Table>> tasks = new ArrayList<>();
+                for (Table sourceBatch : wave) {
+                    tasks.add(() -> process(sourceBatch));
+                }
+                for (Table output : Parallelism.invokeAll(tasks)) {
+                    emit(sink, output);
+                }
+            }
+        }
+
+        sink.end();
+    }
+
+    private void emit(final RowSink sink, final Table output) throws IOException {
+        if (output != null && !sink.isDone()) {
+            long startNanos = System.nanoTime();
+            long startAllocated = outputOperator != null ? ExecutionProfile.threadAllocatedBytes() : 0;
+            sink.accept(output);
+            if (outputOperator != null) {
+                outputOperator.record(output.rowCount, output.rowCount, startNanos, startAllocated);
+            }
+        }
+    }
+
+    /**
+     * Runs one batch of source rows through every stage and returns its output rows, or null if there aren't any.
+     */
+    private Table process(final Table sourceBatch) {
+        Table rows = sourceBatch;
+        for (int i = 0; i < stages.size(); i++) {
+            if (rows.rowCount == 0) {
+                break;
+            }
+            long startNanos = System.nanoTime();
+            long startAllocated = stageOperators != null ? ExecutionProfile.threadAllocatedBytes() : 0;
+            Table joined = stages.get(i).join(rows);
+            if (stageOperators != null) {
+                stageOperators.get(i).record(rows.rowCount, joined.rowCount, startNanos, startAllocated);
+            }
+            rows = joined;
+        }
+
+        if (rows.rowCount == 0) {
+            return null;
+        }
+
+        ArrayList<ColumnVector> outputVectors = new ArrayList<>();
+        for (int index : outputIndexes) {
+            outputVectors.add(rows.vectors.get(index));
+        }
+        return new Table(outputColumns, outputVectors, rows.rowCount);
+    }
+
+    /**
+     * Returns the next batch of source rows, or null once there are none left.
+     */
+    private Table nextSourceBatch() throws IOException {
+        if (sourceOffset < source.rowCount) {
+            int start = sourceOffset;
+            int count = Math.min(BATCH_SIZE, source.rowCount - start);
+            sourceOffset += count;
+            if (count == source.rowCount) {
+                return source;
+            }
+
+            int[] positions = new int[count];
+            for (int i = 0; i < count; i++) {
+                positions[i] = start + i;
+            }
+            return new Table(source.columns, SelectedVector.selectAll(source.vectors, positions, count), count);
+        }
+
+        if (sourceScan != null && sourceScan.hasMoreRows()) {
+            Table batch = sourceScan.read(BATCH_SIZE, false);
+            return batch.rowCount > 0 ? batch : null;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,260 @@
+package sql_evaluator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chooses the order in which the (already filtered) tables of a query are joined.
+ */
+final class Planner {
+
+    // fraction of row pairs assumed to pass a join condition that isn't an equality
+    private static final double RANGE_SELECTIVITY = 1.0 / 3;
+
+    /**
+     * The tables of a query in the order they're joined, and the estimated number of rows after joining each one:
+     * {@code estimatedRows[i]} is the estimated size of the join of {@code tables[0..i]}.
+     */
+    static final class JoinOrder {
+        final List<Table> tables;
+        final double[] estimatedRows;
+
+        JoinOrder(final List<Table> tables, final double[] estimatedRows) {
+            this.tables = tables;
+            this.estimatedRows = estimatedRows;
+        }
+    }
+
+    /**
+     * Greedily builds a left-deep join order: start with the connected pair of tables whose join is estimated to be
+     * smallest (the larger of the two first, so that the join indexes the smaller), then repeatedly add the connected
+     * table that keeps the intermediate result smallest.  A table with no join condition against the tables joined so
+     * far is only added (as a cross join) once no connected table is left, and then the smallest one is picked.
+     */
+    static JoinOrder chooseJoinOrder(final List<Table> tables, final List<Condition> conditions) {
+        List<Table> remaining = new ArrayList<>(tables);
+        List<Table> joined = new ArrayList<>();
+        double[] estimatedRows = new double[tables.size()];
+        if (remaining.size() <= 1) {
+            for (int i = 0; i < remaining.size(); i++) {
+                estimatedRows[i] = remaining.get(i).rowCount;
+            }
+            return new JoinOrder(remaining, estimatedRows);
+        }
+
+        Table bestFirst = null;
+        Table bestSecond = null;
+        double bestEstimate = Double.MAX_VALUE;
+        for (int i = 0; i < remaining.size(); i++) {
+            for (int j = i + 1; j < remaining.size(); j++) {
+                Table first = remaining.get(i);
+                Table second = remaining.get(j);
+                List<ResolvedCondition> joinConditions = Executor.getJoinConditions(first, second, conditions);
+                if (joinConditions.isEmpty()) {
+                    continue;
+                }
+
+                double estimate = estimateJoinRows(first, first.rowCount, second, joinConditions);
+                if (estimate < bestEstimate) {
+                    bestEstimate = estimate;
+                    // the first table is streamed through the join with the second, so the second is indexed
+                    boolean buildOnSecond = isBuildSide(second, first, joinConditions);
+                    bestFirst = buildOnSecond ? first : second;
+                    bestSecond = buildOnSecond ? second : first;
+                }
+            }
+        }
+
+        double joinedRows;
+        if (bestFirst != null) {
+            joined.add(bestFirst);
+            joined.add(bestSecond);
+            remaining.remove(bestFirst);
+            remaining.remove(bestSecond);
+            estimatedRows[0] = bestFirst.rowCount;
+            joinedRows = bestEstimate;
+        } else {
+            Table smallest = smallestTable(remaining);
+            joined.add(smallest);
+            remaining.remove(smallest);
+            joinedRows = smallest.rowCount;
+        }
+        estimatedRows[joined.size() - 1] = joinedRows;
+
+        return addRemainingTables(joined, remaining, joinedRows, estimatedRows, conditions);
+    }
+
+    /**
+     * Like {@link #chooseJoinOrder(List, List)}, but always starts with {@code first} (one of {@code tables}), which
+     * is estimated to have {@code firstRows} rows.  Used when {@code first} is streamed and only a sample of its rows
+     * has been read.
+     */
+    static JoinOrder chooseJoinOrder(final Table first, final double firstRows, final List<Table> tables,
+                                     final List<Condition> conditions) {
+        List<Table> remaining = new ArrayList<>(tables);
+        remaining.remove(first);
+        List<Table> joined = new ArrayList<>();
+        joined.add(first);
+        double[] estimatedRows = new double[tables.size()];
+        estimatedRows[0] = firstRows;
+
+        return addRemainingTables(joined, remaining, firstRows, estimatedRows, conditions);
+    }
+
+    /**
+     * Adds the remaining tables to the join order one at a time, each time picking the connected table that keeps the
+     * intermediate result smallest (or, if none is connected, the smallest table).
+     */
+    private static JoinOrder addRemainingTables(final List<Table> joined, final List<Table> remaining,
+                                                double joinedRows, final double[] estimatedRows,
+                                                final List<Condition> conditions) {
+        while (!remaining.isEmpty()) {
+            Table next = null;
+            double nextEstimate = Double.MAX_VALUE;
+            for (Table candidate : remaining) {
+                List<ResolvedCondition> joinConditions = new ArrayList<>();
+                double selectivity = 1.0;
+                for (Table table : joined) {
+                    List<ResolvedCondition> tableConditions = Executor.getJoinConditions(table, candidate, conditions);
+                    joinConditions.addAll(tableConditions);
+                    selectivity *= estimateSelectivity(table, joinedRows, candidate, tableConditions);
+                }
+                if (joinConditions.isEmpty()) {
+                    continue;
+                }
+
+                double estimate = joinedRows * candidate.rowCount * selectivity;
+                if (estimate < nextEstimate) {
+                    nextEstimate = estimate;
+                    next = candidate;
+                }
+            }
+
+            if (next == null) {
+                // nothing left is connected to the joined tables, so a cross join is unavoidable
+                next = smallestTable(remaining);
+                nextEstimate = joinedRows * next.rowCount;
+            }
+
+            joined.add(next);
+            remaining.remove(next);
+            joinedRows = nextEstimate;
+            estimatedRows[joined.size() - 1] = joinedRows;
+        }
+
+        return new JoinOrder(joined, estimatedRows);
+    }
+
+    /**
+     * Whether {@code second} is the better side of its join with {@code first} to build a hash table (or other index)
+     * on, leaving {@code first} to be streamed through it: the one with fewer rows, or if they have the same number,
+     * the one with fewer distinct values in its column of the first equality condition, if both columns have
+     * statistics.  The left term of each condition is a column of {@code first}.
+     */
+    private static boolean isBuildSide(final Table second, final Table first,
+                                       final List<ResolvedCondition> joinConditions) {
+        if (first.rowCount != second.rowCount) {
+            return second.rowCount < first.rowCount;
+        }
+        for (ResolvedCondition condition : joinConditions) {
+            if (condition.op == Condition.Op.EQ) {
+                ColumnStats firstStats = getStats(first, condition.left);
+                ColumnStats secondStats = getStats(second, condition.right);
+                return firstStats == null || secondStats == null
+                        || secondStats.distinctCount <= firstStats.distinctCount;
+            }
+        }
+        return true;
+    }
+
+    private static Table smallestTable(final List<Table> tables) {
+        Table smallest = tables.get(0);
+        for (Table table : tables) {
+            if (table.rowCount < smallest.rowCount) {
+                smallest = table;
+            }
+        }
+        return smallest;
+    }
+
+    /**
+     * Estimates the number of rows of {@code table} that pass all of the filter conditions (each comparing one of its
+     * columns with a literal), assuming the columns are independent.
+     */
+    static double estimateFilteredRows(final Table table, final List<ResolvedCondition> filterConditions) {
+        double selectivity = 1.0;
+        for (ResolvedCondition condition : filterConditions) {
+            ColumnStats stats = getStats(table, condition.left);
+            Dictionary dictionary = table.vectors.get(((ResolvedColumn) condition.left).columnIndex).dictionary();
+            Object literal = ((ResolvedLiteral) condition.right).value;
+            if (condition.type == SqlType.STR && dictionary != null && dictionary.codeOf((String) literal) < 0
+                    && (condition.op == Condition.Op.EQ || condition.op == Condition.Op.NE)) {
+                // no row has the literal, as is the case once the table has been filtered on it while loading
+                selectivity *= condition.op == Condition.Op.EQ ? 0 : 1;
+            } else if (stats != null && stats.type == condition.type) {
+                selectivity *= stats.estimateSelectivity(condition.op, literal);
+            } else if (condition.op == Condition.Op.EQ) {
+                selectivity /= Math.max(1.0, estimateDistinctCount(table, condition.left));
+            } else if (condition.op != Condition.Op.NE) {
+                selectivity *= RANGE_SELECTIVITY;
+            }
+        }
+        return table.rowCount * selectivity;
+    }
+
+    private static double estimateJoinRows(final Table left, final double leftRows, final Table right,
+                                           final List<ResolvedCondition> joinConditions) {
+        return leftRows * right.rowCount * estimateSelectivity(left, leftRows, right, joinConditions);
+    }
+
+    /**
+     * Estimates the fraction of (left, right) row pairs that pass all of the join conditions.  {@code leftRows} is
+     * the size of the (possibly already joined) input that {@code left}'s columns are read from.
+     */
+    private static double estimateSelectivity(final Table left, final double leftRows, final Table right,
+                                              final List<ResolvedCondition> joinConditions) {
+        double selectivity = 1.0;
+        for (ResolvedCondition condition : joinConditions) {
+            switch (condition.op) {
+                case EQ:
+                    double leftDistinct = Math.min(estimateDistinctCount(left, condition.left), leftRows);
+                    double rightDistinct = estimateDistinctCount(right, condition.right);
+                    selectivity /= Math.max(1.0, Math.max(leftDistinct, rightDistinct));
+                    break;
+                case NE:
+                    break;
+                default:
+                    ColumnStats leftStats = getStats(left, condition.left);
+                    ColumnStats rightStats = getStats(right, condition.right);
+                    if (leftStats != null && rightStats != null && condition.type == SqlType.INT) {
+                        selectivity *= ColumnStats.estimateJoinSelectivity(condition.op, leftStats, rightStats);
+                    } else {
+                        selectivity *= RANGE_SELECTIVITY;
+                    }
+                    break;
+            }
+        }
+        return selectivity;
+    }
+
+    /**
+     * Estimates the number of distinct values left in a column of {@code table}, which may have been filtered or
+     * joined since the column was loaded.
+     */
+    private static double estimateDistinctCount(final Table table, final ResolvedTerm term) {
+        ColumnStats stats = getStats(table, term);
+        if (stats == null || stats.valueCount == 0) {
+            return table.vectors.get(((ResolvedColumn) term).columnIndex).estimateDistinctCount();
+        }
+
+        // Keeping a fraction f of the rows, each of the distinct values (appearing valueCount / distinctCount times
+        // on average) survives with probability 1 - (1 - f)^(valueCount / distinctCount).
+        double fraction = Math.min(1.0, (double) table.rowCount / stats.valueCount);
+        double rowsPerValue = (double) stats.valueCount / stats.distinctCount;
+        return stats.distinctCount * (1 - Math.pow(1 - fraction, rowsPerValue));
+    }
+
+    private static ColumnStats getStats(final Table table, final ResolvedTerm term) {
+        return table.columns.get(((ResolvedColumn) term).columnIndex).stats;
+    }
+}
@@ -6,26 +6,33 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import java.util.ArrayList;
 
 /**
- * The top-level node for a query: SELECT ... FROM ... WHERE.
+ * The top-level node for a query: SELECT ... FROM ... WHERE ... [ORDER BY ...] [LIMIT ...].
  */
 public final class Query extends Node {
     public final ArrayList<Selector> select;  // non-empty
     public final ArrayList<TableDecl> from;  // non-empty
     public final ArrayList<Condition> where;
+    public final ArrayList<SortKey> orderBy;  // empty without an ORDER BY
+    public final Integer limit;  // null without a LIMIT
 
     @JsonCreator
     public Query(
         @JsonProperty("select") ArrayList<Selector> select,
         @JsonProperty("from") ArrayList<TableDecl> from,
-        @JsonProperty("where") ArrayList<Condition> where
+        @JsonProperty("where") ArrayList<Condition> where,
+        @JsonProperty("orderBy") ArrayList<SortKey> orderBy,
+        @JsonProperty("limit") Integer limit
     ) {
         if (select == null) throw new IllegalArgumentException("'select' can't be null");
         if (from == null) throw new IllegalArgumentException("'from' can't be null");
         if (where == null) throw new IllegalArgumentException("'where' can't be null");
         if (select.size() == 0) throw new IllegalArgumentException("'select' can't be empty");
         if (from.size() == 0) throw new IllegalArgumentException("'from' can't be empty");
+        if (limit != null && limit < 0) throw new IllegalArgumentException("'limit' can't be negative");
         this.select = select;
         this.from = from;
         this.where = where;
+        this.orderBy = orderBy != null ? orderBy : new ArrayList<>();
+        this.limit = limit;
     }
 }
@@ -0,0 +1,98 @@
+package sql_evaluator;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs queries one after another in a single process, so tables stay loaded (see {@link TableCache}) and the JIT
+ * stays warm between them.
+ *
+ * Queries are read from the input as a sequence of JSON values in the format written by "sql-to-json", e.g. with
+ * {@code cat a.sql.json b.sql.json | sql_evaluator --server tables}.  The response to each query is what would have
+ * been written to the output file, followed by a newline if it doesn't end with one, and then an empty line (output
+ * never contains one).  Rows are written as they're produced rather than held until the query finishes, so a query
+ * that fails after some of its output has gone out can't take it back: instead, that output is ended with a newline
+ * and followed by the error message, which is then the response's last line rather than the closing "]".
+ */
+final class QueryServer {
+    private final String tableFolder;
+    private final TableCache tableCache = new TableCache();
+
+    QueryServer(final String tableFolder) {
+        this.tableFolder = tableFolder;
+    }
+
+    void serve(final InputStream in, final OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        MappingIterator<Query> queries = JacksonUtil.readValues(in, Query.class);
+        while (true) {
+            Query query;
+            try {
+                if (!queries.hasNextValue()) {
+                    break;
+                }
+                query = queries.nextValue();
+            } catch (JsonProcessingException ex) {
+                // there's no telling where the next query starts, so give up
+                writeResponse(writer, "Error loading query JSON: " + ex.getMessage());
+                return;
+            }
+
+            execute(query, writer);
+            writer.write("\n");
+            writer.flush();
+        }
+    }
+
+    private static void writeResponse(final Writer writer, final String response) throws IOException {
+        writeLine(writer, response);
+        writer.write("\n");
+        writer.flush();
+    }
+
+    private static void writeLine(final Writer writer, final String line) throws IOException {
+        writer.write(line);
+        if (!line.endsWith("\n")) {
+            writer.write("\n");
+        }
+    }
+
+    /**
+     * Runs a query, writing its output to {@code writer} as it's produced, or its error message.  Either way, what's
+     * written ends with a newline.
+     */
+    void execute(final Query query, final Writer writer) throws IOException {
+        List<Table> tables = new ArrayList<>();
+        for (TableDecl tableDecl : query.from) {
+            String tableSourcePath = Main.getTableSourcePath(tableFolder, tableDecl);
+            try {
+                tables.add(tableCache.get(tableSourcePath).withQualifier(tableDecl.name));
+            } catch (IOException ex) {
+                writeLine(writer, "Error loading \"" + tableSourcePath + "\": " + ex.getMessage());
+                return;
+            }
+        }
+
+        Main.WriterSink sink = new Main.WriterSink(writer);
+        try {
+            Validator.checkQueryValidity(tables, query);
+            Executor.executeQuery(tables, query, sink);
+        } catch (RuntimeException e) {
+            // output stops after a header or row, never a newline, so this can't produce an empty line
+            if (sink.flushPartial()) {
+                writer.write("\n");
+            }
+            writeLine(writer, e.getMessage());
+        }
+    }
+}
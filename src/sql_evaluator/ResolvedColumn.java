@@ -1,7 +1,5 @@
 package sql_evaluator;
 
-import java.util.List;
-
 public class ResolvedColumn extends ResolvedTerm {
     public final int columnIndex;
 
@@ -10,7 +8,15 @@ public class ResolvedColumn extends ResolvedTerm {
         this.columnIndex = columnIndex;
     }
 
-    public Object getValueForRow(final List<Object> row) {
-        return row.get(columnIndex);
+    public Object getValueForRow(final Table table, final int row) {
+        return table.vectors.get(columnIndex).getValue(row);
+    }
+
+    public int getIntForRow(final Table table, final int row) {
+        return table.vectors.get(columnIndex).getInt(row);
+    }
+
+    public String getStringForRow(final Table table, final int row) {
+        return table.vectors.get(columnIndex).getString(row);
     }
 }
@@ -1,12 +1,11 @@
 package sql_evaluator;
 
-import java.util.List;
-
 public class ResolvedCondition {
     public final Condition.Op op;
     public final ResolvedTerm left;
     public final ResolvedTerm right;
     public final SqlType type;
+    private final CompiledCondition compiled;
 
     public ResolvedCondition(final Condition.Op op, final ResolvedTerm left, final ResolvedTerm right, final SqlType type) {
         if (op == null) throw new IllegalArgumentException("'op' can't be null");
@@ -16,41 +15,67 @@ public class ResolvedCondition {
         this.left = left;
         this.right = right;
         this.type = type;
+        this.compiled = CompiledCondition.compile(this);
+    }
+
+    /**
+     * The left term is read from {@code leftTable} and the right term from {@code rightTable}.  For single-table
+     * filter conditions the right term is a literal and {@code rightTable} may be null.
+     */
+    public boolean evaluate(final Table leftTable, final int leftRow, final Table rightTable, final int rightRow) {
+        return compiled.test(leftTable, leftRow, rightTable, rightRow);
     }
 
-    public boolean evaluate(List<Object> leftRow, List<Object> rightRow) {
-        Object valueLeft = left.getValueForRow(leftRow);
-        Object valueRight = right.getValueForRow(rightRow);
+    /**
+     * Whether the condition can be evaluated at all: both sides have the same type, and strings are only compared
+     * with "=" and "!=".  Evaluating any other condition throws.
+     */
+    boolean isEvaluable() {
+        return left.type == type
+                && (type == SqlType.INT || op == Condition.Op.EQ || op == Condition.Op.NE);
+    }
 
+    /**
+     * Evaluates the condition through its terms, for shapes {@link CompiledCondition} doesn't specialize.
+     */
+    boolean evaluateTerms(final Table leftTable, final int leftRow, final Table rightTable, final int rightRow) {
         switch (type) {
             case INT:
-                switch (op) {
-                    case EQ:
-                        return ((int) valueLeft) == ((int) valueRight);
-                    case GE:
-                        return ((int) valueLeft) >= ((int) valueRight);
-                    case GT:
-                        return ((int) valueLeft) > ((int) valueRight);
-                    case LE:
-                        return ((int) valueLeft) <= ((int) valueRight);
-                    case LT:
-                        return ((int) valueLeft) < ((int) valueRight);
-                    case NE:
-                        return ((int) valueLeft) != ((int) valueRight);
-                    default:
-                        throw new RuntimeException("Unexpected operation type for comparison: " + op);
-                }
+                return compare(op, left.getIntForRow(leftTable, leftRow), right.getIntForRow(rightTable, rightRow));
             case STR:
-                switch (op) {
-                    case EQ:
-                        return ((String) valueLeft).equals((String) valueRight);
-                    case NE:
-                        return !((String) valueLeft).equals((String) valueRight);
-                    default:
-                        throw new RuntimeException("Unexpected operation type for comparison: " + op);
-                }
+                return compare(op, left.getStringForRow(leftTable, leftRow), right.getStringForRow(rightTable, rightRow));
             default:
                 throw new RuntimeException("Unexpected SQL type for comparison: " + type);
         }
     }
+
+    static boolean compare(final Condition.Op op, final int intLeft, final int intRight) {
+        switch (op) {
+            case EQ:
+                return intLeft == intRight;
+            case GE:
+                return intLeft >= intRight;
+            case GT:
+                return intLeft > intRight;
+            case LE:
+                return intLeft <= intRight;
+            case LT:
+                return intLeft < intRight;
+            case NE:
+                return intLeft != intRight;
+            default:
+                throw new RuntimeException("Unexpected operation type for comparison: " + op);
+        }
+    }
+
+    static boolean compare(final Condition.Op op, final String strLeft, final String strRight) {
+        switch (op) {
+            case EQ:
+                return strLeft.equals(strRight);
+            case NE:
+                return !strLeft.equals(strRight);
+            default:
+                throw new RuntimeException("Unexpected operation type for comparison: " + op);
+        }
+    }
 }
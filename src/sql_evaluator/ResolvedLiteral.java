@@ -1,7 +1,5 @@
 package sql_evaluator;
 
-import java.util.List;
-
 public class ResolvedLiteral extends ResolvedTerm {
     public final Object value;
 
@@ -14,7 +12,15 @@ public class ResolvedLiteral extends ResolvedTerm {
         this.value = value;
     }
 
-    public Object getValueForRow(final List<Object> row) {
+    public Object getValueForRow(final Table table, final int row) {
         return value;
     }
+
+    public int getIntForRow(final Table table, final int row) {
+        return (Integer) value;
+    }
+
+    public String getStringForRow(final Table table, final int row) {
+        return (String) value;
+    }
 }
@@ -1,7 +1,5 @@
 package sql_evaluator;
 
-import java.util.List;
-
 public abstract class ResolvedTerm {
     public final SqlType type;
 
@@ -9,5 +7,9 @@ public abstract class ResolvedTerm {
         this.type = type;
     }
 
-    public abstract Object getValueForRow(final List<Object> row);
+    public abstract Object getValueForRow(final Table table, final int row);
+
+    public abstract int getIntForRow(final Table table, final int row);
+
+    public abstract String getStringForRow(final Table table, final int row);
 }
@@ -0,0 +1,33 @@
+package sql_evaluator;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Receives the output of a query as it is produced, one batch of rows at a time.
+ */
+interface RowSink {
+
+    /**
+     * Called once, before any rows, with the output columns.
+     */
+    void begin(List<Table.ColumnDef> columns) throws IOException;
+
+    /**
+     * Called with each batch of output rows, in order.  The batch's columns are the ones passed to {@link #begin}.
+     */
+    void accept(Table batch) throws IOException;
+
+    /**
+     * Whether the sink needs no more rows, in which case the rest of the query's output needn't be produced.  Checked
+     * between batches.
+     */
+    default boolean isDone() {
+        return false;
+    }
+
+    /**
+     * Called once, after the last batch.
+     */
+    void end() throws IOException;
+}
@@ -0,0 +1,105 @@
+package sql_evaluator;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A view over the rows of another vector picked out by a selection vector: row {@code i} of the view is row
+ * {@code positions[i]} of {@code base}.  Nothing is copied until the cells are actually read.
+ */
+public final class SelectedVector extends ColumnVector {
+    final ColumnVector base;
+    final int[] positions;
+    private final int size;
+
+    private SelectedVector(final ColumnVector base, final int[] positions, final int size) {
+        super(base.type);
+        this.base = base;
+        this.positions = positions;
+        this.size = size;
+    }
+
+    /**
+     * Selects the first {@code count} entries of {@code positions} from each vector.  A view of a view is collapsed
+     * into a single view over the underlying vector, and vectors that shared a selection before (e.g. all the
+     * columns of a filtered table) share the composed one afterwards.
+     */
+    static ArrayList<ColumnVector> selectAll(final List<ColumnVector> vectors, final int[] positions, final int count) {
+        Map<int[], int[]> composedPositions = new IdentityHashMap<>();
+        ArrayList<ColumnVector> selected = new ArrayList<>();
+        for (ColumnVector vector : vectors) {
+            if (vector instanceof SelectedVector) {
+                SelectedVector view = (SelectedVector) vector;
+                int[] composed = composedPositions.get(view.positions);
+                if (composed == null) {
+                    composed = compose(view.positions, positions, count);
+                    composedPositions.put(view.positions, composed);
+                }
+                selected.add(new SelectedVector(view.base, composed, count));
+            } else {
+                selected.add(new SelectedVector(vector, positions, count));
+            }
+        }
+
+        return selected;
+    }
+
+    private static int[] compose(final int[] outer, final int[] inner, final int count) {
+        int[] composed = new int[count];
+        for (int i = 0; i < count; i++) {
+            composed[i] = outer[inner[i]];
+        }
+        return composed;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int estimateDistinctCount() {
+        return Math.min(base.estimateDistinctCount(), size);
+    }
+
+    @Override
+    public Object getValue(final int row) {
+        return base.getValue(positions[row]);
+    }
+
+    @Override
+    public int getInt(final int row) {
+        return base.getInt(positions[row]);
+    }
+
+    @Override
+    public String getString(final int row) {
+        return base.getString(positions[row]);
+    }
+
+    @Override
+    public Dictionary dictionary() {
+        return base.dictionary();
+    }
+
+    @Override
+    public int getCode(final int row) {
+        return base.getCode(positions[row]);
+    }
+
+    @Override
+    public void getCodes(final int from, final int count, final int[] dest) {
+        for (int i = 0; i < count; i++) {
+            dest[i] = base.getCode(positions[from + i]);
+        }
+    }
+
+    @Override
+    public void getInts(final int from, final int count, final int[] dest) {
+        for (int i = 0; i < count; i++) {
+            dest[i] = base.getInt(positions[from + i]);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package sql_evaluator;
+
+import com.fasterxml.jackson.annotation.*;
+
+/**
+ * These appear in the ORDER BY clause.
+ */
+public final class SortKey extends Node {
+    public final ColumnRef column;  // an output column's name, or else a column of one of the tables
+    public final boolean descending;
+
+    @JsonCreator
+    public SortKey(@JsonProperty("column") ColumnRef column, @JsonProperty("descending") boolean descending) {
+        if (column == null) throw new IllegalArgumentException("'column' can't be null");
+        this.column = column;
+        this.descending = descending;
+    }
+}
@@ -0,0 +1,218 @@
+package sql_evaluator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts the rows it's given for an ORDER BY, keeping only the first {@code limit} of them (if there's a LIMIT), and
+ * hands them on to another sink once it has seen them all.  Rows with equal sort keys stay in the order they arrived.
+ *
+ * The rows it's given have the output columns followed by any sort key columns that aren't output; only the first
+ * {@code outputColumnCount} columns are passed on.
+ *
+ * With a small enough limit, only the best rows seen so far are kept, in a bounded heap whose root is the worst of
+ * them: a new row is only copied (from its batch into the heap) if it beats the root, which after the first few
+ * batches few rows do.  Otherwise every row is collected and sorted at the end.
+ */
+final class SortSink implements RowSink {
+
+    // the most rows that are kept in a heap, as boxed cells, rather than collected into vectors and sorted
+    private static final int MAX_HEAP_ROWS = 1 << 16;
+
+    private final RowSink sink;
+    private final int outputColumnCount;
+    private final int[] keyColumns;
+    private final boolean[] descending;
+    private final int limit;
+    private List<Table.ColumnDef> columns;
+
+    // with a limit of at most MAX_HEAP_ROWS: the best rows so far, each its cells followed by its arrival number
+    private final PriorityQueue<Object[]> heap;
+    private long arrivals = 0;
+
+    // otherwise
+    private final TableSink rows;
+
+    /**
+     * Sorts on the given columns, in order, each in descending order if its {@code descending} flag is set.
+     * {@code limit} is null if every row is wanted.
+     */
+    SortSink(final RowSink sink, final int outputColumnCount, final int[] keyColumns, final boolean[] descending,
+             final Integer limit) {
+        this.sink = sink;
+        this.outputColumnCount = outputColumnCount;
+        this.keyColumns = keyColumns;
+        this.descending = descending;
+        this.limit = limit != null ? limit : Integer.MAX_VALUE;
+        if (this.limit <= MAX_HEAP_ROWS) {
+            Comparator<Object[]> order = this::compareHeapRows;
+            this.heap = new PriorityQueue<>(Math.max(1, this.limit), order.reversed());
+            this.rows = null;
+        } else {
+            this.heap = null;
+            this.rows = new TableSink(Integer.MAX_VALUE);
+        }
+    }
+
+    @Override
+    public void begin(final List<Table.ColumnDef> columns) throws IOException {
+        this.columns = columns;
+        if (rows != null) {
+            rows.begin(columns);
+        }
+        sink.begin(new ArrayList<>(columns.subList(0, outputColumnCount)));
+    }
+
+    @Override
+    public void accept(final Table batch) {
+        if (rows != null) {
+            rows.accept(batch);
+            return;
+        } else if (limit == 0) {
+            return;
+        }
+
+        for (int row = 0; row < batch.rowCount; row++) {
+            if (heap.size() < limit) {
+                heap.add(heapRow(batch, row));
+            } else if (compareToHeapRow(batch, row, heap.peek()) < 0) {
+                // a row equal to the root arrived after it, so it's the worse of the two
+                heap.poll();
+                heap.add(heapRow(batch, row));
+            }
+            arrivals++;
+        }
+    }
+
+    @Override
+    public boolean isDone() {
+        return limit == 0 || sink.isDone();
+    }
+
+    @Override
+    public void end() throws IOException {
+        Table sorted = rows != null ? sortedRows() : sortedHeapRows();
+        for (int start = 0; start < sorted.rowCount && !sink.isDone(); start += Pipeline.BATCH_SIZE) {
+            int count = Math.min(Pipeline.BATCH_SIZE, sorted.rowCount - start);
+            int[] positions = new int[count];
+            for (int i = 0; i < count; i++) {
+                positions[i] = start + i;
+            }
+            sink.accept(new Table(sorted.columns, SelectedVector.selectAll(sorted.vectors, positions, count), count));
+        }
+        sink.end();
+    }
+
+    /**
+     * The collected rows, sorted and cut down to the limit, as a table of the output columns (whose vectors may be
+     * views over the collected ones).
+     */
+    private Table sortedRows() {
+        Table collected = rows.table();
+        Integer[] order = new Integer[collected.rowCount];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        // a stable sort, so rows with equal keys stay in the order they arrived
+        Arrays.sort(order, (left, right) -> compareRows(collected, left, right));
+
+        int count = Math.min(order.length, limit);
+        int[] positions = new int[count];
+        for (int i = 0; i < count; i++) {
+            positions[i] = order[i];
+        }
+        List<ColumnVector> outputVectors = collected.vectors.subList(0, outputColumnCount);
+        return new Table(new ArrayList<>(columns.subList(0, outputColumnCount)),
+                         SelectedVector.selectAll(outputVectors, positions, count), count);
+    }
+
+    /**
+     * The rows in the heap, sorted, as a table of the output columns.
+     */
+    private Table sortedHeapRows() {
+        Object[][] sorted = heap.toArray(new Object[heap.size()][]);
+        Arrays.sort(sorted, this::compareHeapRows);
+
+        ArrayList<ColumnVector> vectors = new ArrayList<>();
+        for (int column = 0; column < outputColumnCount; column++) {
+            if (columns.get(column).type == SqlType.INT) {
+                IntVector.Builder builder = new IntVector.Builder();
+                for (Object[] row : sorted) {
+                    builder.add((Integer) row[column]);
+                }
+                vectors.add(builder.build());
+            } else {
+                StrVector.Builder builder = new StrVector.Builder();
+                for (Object[] row : sorted) {
+                    builder.add((String) row[column]);
+                }
+                vectors.add(builder.build());
+            }
+        }
+        return new Table(new ArrayList<>(columns.subList(0, outputColumnCount)), vectors, sorted.length);
+    }
+
+    private Object[] heapRow(final Table batch, final int row) {
+        Object[] cells = new Object[batch.vectors.size() + 1];
+        for (int column = 0; column < batch.vectors.size(); column++) {
+            cells[column] = batch.vectors.get(column).getValue(row);
+        }
+        cells[cells.length - 1] = arrivals;
+        return cells;
+    }
+
+    private int compareRows(final Table table, final int left, final int right) {
+        for (int i = 0; i < keyColumns.length; i++) {
+            ColumnVector vector = table.vectors.get(keyColumns[i]);
+            int comparison;
+            if (vector.type == SqlType.INT) {
+                comparison = Integer.compare(vector.getInt(left), vector.getInt(right));
+            } else if (vector.dictionary() != null && vector.getCode(left) == vector.getCode(right)) {
+                comparison = 0;
+            } else {
+                comparison = vector.getString(left).compareTo(vector.getString(right));
+            }
+            if (comparison != 0) {
+                return descending[i] ? -comparison : comparison;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Compares a row of a batch with a row in the heap by their sort keys alone.
+     */
+    private int compareToHeapRow(final Table batch, final int row, final Object[] heapRow) {
+        for (int i = 0; i < keyColumns.length; i++) {
+            ColumnVector vector = batch.vectors.get(keyColumns[i]);
+            int comparison;
+            if (vector.type == SqlType.INT) {
+                comparison = Integer.compare(vector.getInt(row), (Integer) heapRow[keyColumns[i]]);
+            } else {
+                comparison = vector.getString(row).compareTo((String) heapRow[keyColumns[i]]);
+            }
+            if (comparison != 0) {
+                return descending[i] ? -comparison : comparison;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Compares two rows in the heap by their sort keys, and then by when they arrived.
+     */
+    @SuppressWarnings("unchecked")
+    private int compareHeapRows(final Object[] left, final Object[] right) {
+        for (int i = 0; i < keyColumns.length; i++) {
+            int comparison = ((Comparable<Object>) left[keyColumns[i]]).compareTo(right[keyColumns[i]]);
+            if (comparison != 0) {
+                return descending[i] ? -comparison : comparison;
+            }
+        }
+        return Long.compare((Long) left[left.length - 1], (Long) right[right.length - 1]);
+    }
+}
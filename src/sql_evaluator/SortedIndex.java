@@ -0,0 +1,307 @@
+package sql_evaluator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A secondary index over one column of a table: the table's row numbers, sorted by the column's value (and then by row
+ * number).  The rows with a value in a given range are a contiguous run of it, found by binary search, so a filter
+ * comparing the column with a literal ("=", "<", "<=", ">" or ">=" on INT, "=" on STR) only has to look at the rows
+ * that match instead of scanning the whole column.
+ *
+ * Indexes are built ahead of time (see {@link #main}) and stored next to the table's ".table.json" file, in a
+ * ".table.index" file holding the indexes of any number of its columns.  All numbers are little-endian:
+ * <pre>
+ *   "SQLTIDX1"
+ *   long byte length and long modification time (in milliseconds) of the ".table.json" file it was built from
+ *   int row count, int column count
+ *   for each column: its name (an int byte length and UTF-8 bytes), its type (a byte: 0 for INT, 1 for STR),
+ *     padding to a multiple of 4 bytes, then one int row number per row
+ * </pre>
+ *
+ * An index file whose ".table.json" file has changed since is stale and isn't used.  Only a table loaded in full
+ * (from a ".table.bin" file, or into a {@link TableCache}) uses its indexes; one whose rows are filtered as they're
+ * parsed has nothing left to index.
+ */
+final class SortedIndex {
+    private static final byte[] MAGIC = "SQLTIDX1".getBytes(StandardCharsets.US_ASCII);
+    private static final byte INT_TYPE = 0;
+    private static final byte STR_TYPE = 1;
+
+    // the row numbers, in order of the column's value; read in place from the mapped file
+    private final IntBuffer rows;
+
+    private SortedIndex(final IntBuffer rows) {
+        this.rows = rows;
+    }
+
+    /**
+     * Builds indexes over the named columns of the ".table.json" file given on the command line, replacing its
+     * ".table.index" file.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || !args[0].endsWith(".table.json")) {
+            System.err.println("Usage: COMMAND <table-json-file> <column>...");
+            System.exit(1); return;
+        }
+
+        String jsonPath = args[0];
+        File jsonFile = new File(jsonPath);
+        long length = jsonFile.length();
+        long lastModified = jsonFile.lastModified();
+        Table table = JacksonUtil.readFromFile(jsonPath, Table.class);
+        List<Integer> columns = new ArrayList<>();
+        for (String name : Arrays.asList(args).subList(1, args.length)) {
+            int column = -1;
+            for (int i = 0; i < table.columns.size(); i++) {
+                if (table.columns.get(i).name.equals(name)) {
+                    column = i;
+                }
+            }
+            if (column < 0) {
+                System.err.println("\"" + jsonPath + "\" has no column \"" + name + "\"");
+                System.exit(1); return;
+            }
+            columns.add(column);
+        }
+
+        write(table, columns, length, lastModified, indexPath(jsonPath));
+    }
+
+    /**
+     * The ".table.index" file that holds the indexes of a ".table.json" file's columns.
+     */
+    static String indexPath(final String jsonPath) {
+        return jsonPath.substring(0, jsonPath.length() - ".json".length()) + ".index";
+    }
+
+    static void write(final Table table, final List<Integer> columns, final long sourceLength,
+                      final long sourceLastModified, final String path) throws IOException {
+        try (BinaryTable.Output out = new BinaryTable.Output(
+                FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                 StandardOpenOption.WRITE))) {
+            out.putBytes(MAGIC);
+            out.reserve(24).putLong(sourceLength).putLong(sourceLastModified)
+               .putInt(table.rowCount).putInt(columns.size());
+            for (int column : columns) {
+                ColumnVector vector = table.vectors.get(column);
+                out.putString(table.columns.get(column).name);
+                out.reserve(1).put(vector.type == SqlType.INT ? INT_TYPE : STR_TYPE);
+                out.pad();
+                for (int row : sortedRows(vector)) {
+                    out.reserve(4).putInt(row);
+                }
+            }
+        }
+    }
+
+    /**
+     * The vector's row numbers, sorted by value and then by row number.  Each row is sorted as a long holding its value
+     * (or for STR, the value's rank among the distinct values) above its row number.
+     */
+    private static int[] sortedRows(final ColumnVector vector) {
+        int[] ranks = null;
+        if (vector.type == SqlType.STR) {
+            Dictionary dictionary = vector.dictionary();
+            if (dictionary == null) {
+                StrVector.Builder builder = new StrVector.Builder();
+                for (int row = 0; row < vector.size(); row++) {
+                    builder.add(vector.getString(row));
+                }
+                return sortedRows(builder.build());
+            }
+
+            Integer[] codes = new Integer[dictionary.size()];
+            for (int code = 0; code < codes.length; code++) {
+                codes[code] = code;
+            }
+            Arrays.sort(codes, (left, right) -> dictionary.get(left).compareTo(dictionary.get(right)));
+            ranks = new int[codes.length];
+            for (int rank = 0; rank < codes.length; rank++) {
+                ranks[codes[rank]] = rank;
+            }
+        }
+
+        long[] keys = new long[vector.size()];
+        for (int row = 0; row < keys.length; row++) {
+            long value = ranks == null ? vector.getInt(row) : ranks[vector.getCode(row)];
+            keys[row] = (value << 32) | row;
+        }
+        Arrays.sort(keys);
+
+        int[] rows = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            rows[i] = (int) keys[i];
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the table with the indexes of the current ".table.index" file next to the ".table.json" file it was
+     * loaded from, or the table itself if there's no such file, or it's stale or doesn't fit the table.
+     */
+    static Table attach(final Table table, final String jsonPath) throws IOException {
+        File jsonFile = new File(jsonPath);
+        File indexFile = new File(indexPath(jsonPath));
+        if (!indexFile.isFile() || !jsonFile.isFile()) {
+            return table;
+        }
+
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = map(channel, 0, MAGIC.length + 24);
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("\"" + indexFile + "\" isn't an index file");
+            }
+            long sourceLength = header.getLong();
+            long sourceLastModified = header.getLong();
+            int rowCount = header.getInt();
+            int columnCount = header.getInt();
+            if (sourceLength != jsonFile.length() || sourceLastModified != jsonFile.lastModified()
+                    || rowCount != table.rowCount) {
+                return table;
+            }
+
+            SortedIndex[] indexes = new SortedIndex[table.columns.size()];
+            long offset = header.capacity();
+            for (int i = 0; i < columnCount; i++) {
+                ByteBuffer nameLength = map(channel, offset, 4);
+                ByteBuffer columnHeader = map(channel, offset, 4 + nameLength.getInt() + 1);
+                String name = BinaryTable.getString(columnHeader);
+                SqlType type = columnHeader.get() == INT_TYPE ? SqlType.INT : SqlType.STR;
+                offset = (offset + columnHeader.capacity() + 3) / 4 * 4;
+                IntBuffer rows = map(channel, offset, 4L * rowCount).asIntBuffer();
+                offset += 4L * rowCount;
+
+                for (int column = 0; column < table.columns.size(); column++) {
+                    Table.ColumnDef columnDef = table.columns.get(column);
+                    if (columnDef.name.equals(name) && columnDef.type == type) {
+                        indexes[column] = new SortedIndex(rows);
+                    }
+                }
+            }
+            return table.withSortedIndexes(indexes);
+        }
+    }
+
+    private static ByteBuffer map(final FileChannel channel, final long offset, final long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("index is too large to map (" + size + " bytes)");
+        }
+        if (offset < 0 || size < 0 || offset + size > channel.size()) {
+            throw new IOException("index file is truncated or corrupt");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Finds the rows whose cell in {@code vector} (the indexed column) passes {@code op literal}, or returns null if
+     * the index can't answer that.
+     */
+    Range find(final ColumnVector vector, final Condition.Op op, final ResolvedLiteral literal) {
+        int size = rows.limit();
+        if (vector.type == SqlType.STR) {
+            if (op != Condition.Op.EQ) {
+                return null;
+            }
+            String value = literal.getStringForRow(null, -1);
+            return new Range(lowerBound(vector, value, false), lowerBound(vector, value, true));
+        }
+
+        int value = literal.getIntForRow(null, -1);
+        switch (op) {
+            case EQ:
+                return new Range(lowerBound(vector, value, false), lowerBound(vector, value, true));
+            case LT:
+                return new Range(0, lowerBound(vector, value, false));
+            case LE:
+                return new Range(0, lowerBound(vector, value, true));
+            case GT:
+                return new Range(lowerBound(vector, value, true), size);
+            case GE:
+                return new Range(lowerBound(vector, value, false), size);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * The position of the first row whose value is at least {@code value} (or if {@code after}, more than it).
+     */
+    private int lowerBound(final ColumnVector vector, final int value, final boolean after) {
+        int low = 0;
+        int high = rows.limit();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int cell = vector.getInt(rows.get(middle));
+            if (cell < value || (after && cell == value)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int lowerBound(final ColumnVector vector, final String value, final boolean after) {
+        int low = 0;
+        int high = rows.limit();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int comparison = vector.getString(rows.get(middle)).compareTo(value);
+            if (comparison < 0 || (after && comparison == 0)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * A run of the index: the rows at positions {@code from} to {@code to - 1} in value order.
+     */
+    final class Range {
+        final int from;
+        final int to;
+
+        private Range(final int from, final int to) {
+            this.from = from;
+            this.to = Math.max(from, to);
+        }
+
+        int size() {
+            return to - from;
+        }
+
+        /**
+         * The rows in both this run and {@code other}, a run of the same index.
+         */
+        Range intersect(final Range other) {
+            return new Range(Math.max(from, other.from), Math.min(to, other.to));
+        }
+
+        /**
+         * The rows, in increasing order.
+         */
+        int[] rows() {
+            int[] selected = new int[size()];
+            for (int i = 0; i < selected.length; i++) {
+                selected[i] = rows.get(from + i);
+            }
+            Arrays.sort(selected);
+            return selected;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package sql_evaluator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A STR column stored as dictionary codes.  Each distinct string is held once in {@code dictionary} and every
+ * cell is an index into it, so repeated values (country names, etc) cost four bytes per row.
+ */
+public final class StrVector extends ColumnVector {
+    final int[] codes;
+    final Dictionary dictionary;
+    private final int size;
+
+    public StrVector(final int[] codes, final int size, final Dictionary dictionary) {
+        super(SqlType.STR);
+        this.codes = codes;
+        this.size = size;
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int estimateDistinctCount() {
+        // the dictionary may be shared with a larger vector that this one's rows were copied from
+        return Math.min(dictionary.size(), size);
+    }
+
+    @Override
+    public Object getValue(final int row) {
+        return getString(row);
+    }
+
+    @Override
+    public String getString(final int row) {
+        return dictionary.get(codes[row]);
+    }
+
+    @Override
+    public Dictionary dictionary() {
+        return dictionary;
+    }
+
+    @Override
+    public int getCode(final int row) {
+        return codes[row];
+    }
+
+    @Override
+    public void getCodes(final int from, final int count, final int[] dest) {
+        System.arraycopy(codes, from, dest, 0, count);
+    }
+
+    public static final class Builder {
+        private final Map<String, Integer> codesByValue = new HashMap<>();
+        private final ArrayList<String> values = new ArrayList<>();
+        private final Dictionary dictionary = new Dictionary(values, codesByValue);
+        private int[] codes = new int[16];
+        private int size = 0;
+
+        public void add(final String value) {
+            Integer code = codesByValue.get(value);
+            if (code == null) {
+                code = values.size();
+                values.add(value);
+                codesByValue.put(value, code);
+            }
+
+            if (size == codes.length) {
+                codes = Arrays.copyOf(codes, size * 2);
+            }
+            codes[size++] = code;
+        }
+
+        public StrVector build() {
+            return new StrVector(codes, size, dictionary);
+        }
+    }
+}
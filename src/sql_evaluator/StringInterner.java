@@ -0,0 +1,74 @@
+package sql_evaluator;
+
+/**
+ * Maps the characters of a string (as a range of a {@code char[]}, like a {@code JsonParser}'s text buffer) to a
+ * single shared String instance, so that a repeated value is only allocated the first time it's seen.
+ *
+ * The table stops growing at {@link #MAX_SIZE} strings; values seen after that are still looked up, but new ones are
+ * just allocated.  That keeps a column of mostly distinct values (which gains nothing from interning) from holding on
+ * to all of them.
+ */
+final class StringInterner {
+
+    static final int MAX_SIZE = 1 << 16;
+
+    private String[] slots = new String[64];
+    private int size = 0;
+
+    String intern(final char[] chars, final int offset, final int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + chars[offset + i];
+        }
+
+        int mask = slots.length - 1;
+        int slot = spread(hash) & mask;
+        for (String candidate = slots[slot]; candidate != null; candidate = slots[slot]) {
+            if (candidate.hashCode() == hash && contentEquals(candidate, chars, offset, length)) {
+                return candidate;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        String value = new String(chars, offset, length);
+        if (size < MAX_SIZE) {
+            slots[slot] = value;
+            if (++size * 2 > slots.length) {
+                grow();
+            }
+        }
+        return value;
+    }
+
+    private void grow() {
+        String[] oldSlots = slots;
+        slots = new String[oldSlots.length * 2];
+        int mask = slots.length - 1;
+        for (String value : oldSlots) {
+            if (value != null) {
+                int slot = spread(value.hashCode()) & mask;
+                while (slots[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = value;
+            }
+        }
+    }
+
+    private static boolean contentEquals(final String value, final char[] chars, final int offset, final int length) {
+        if (value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int spread(final int hash) {
+        // as HashMap does, so the high bits of the hash count too
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -5,10 +5,7 @@ import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.core.JsonToken;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
@@ -21,16 +18,43 @@ import java.util.*;
 
 /**
  * Represents the data loaded from a ".table.json" file.
+ *
+ * Data is stored column-wise: {@code vectors} holds one {@link ColumnVector} per entry in {@code columns}, and row
+ * {@code i} of the table is made up of the {@code i}th cell of each vector.  {@link #rows()} provides the old
+ * row-oriented view for callers that need it.
  */
 @JsonDeserialize(using=Table.Deserializer.class)
 @JsonSerialize(using=Table.Serializer.class)
 public final class Table extends Node {
     public final ArrayList<ColumnDef> columns;
-    public final ArrayList<ArrayList<Object>> rows;  // Each value is either a String or Integer object.
+    public final ArrayList<ColumnVector> vectors;
+    public final int rowCount;
 
-    public Table(ArrayList<ColumnDef> columns, ArrayList<ArrayList<Object>> rows) {
+    // a SortedIndex (or null) for each column; null for a table without indexes, which is any table not loaded in full
+    private final SortedIndex[] sortedIndexes;
+
+    // likewise a ZoneMap (or null) for each column, or null for a table without them
+    private final ZoneMap[] zoneMaps;
+
+    public Table(ArrayList<ColumnDef> columns, ArrayList<ColumnVector> vectors, int rowCount) {
+        this(columns, vectors, rowCount, null, null);
+    }
+
+    private Table(final ArrayList<ColumnDef> columns, final ArrayList<ColumnVector> vectors, final int rowCount,
+                  final SortedIndex[] sortedIndexes, final ZoneMap[] zoneMaps) {
+        if (columns.size() != vectors.size()) {
+            throw new IllegalArgumentException("table has " + columns.size() + " columns but " + vectors.size() + " vectors");
+        }
+        for (ColumnVector vector : vectors) {
+            if (vector.size() != rowCount) {
+                throw new IllegalArgumentException("vector has " + vector.size() + " cells, but the table has " + rowCount + " rows");
+            }
+        }
         this.columns = columns;
-        this.rows = rows;
+        this.vectors = vectors;
+        this.rowCount = rowCount;
+        this.sortedIndexes = sortedIndexes;
+        this.zoneMaps = zoneMaps;
     }
 
     public void setQualifier(final String qualifier) {
@@ -39,41 +63,137 @@ public final class Table extends Node {
         }
     }
 
-    public Table filter(final List<ResolvedCondition> resolvedConditions) {
-        ArrayList<ArrayList<Object>> matchingRows = new ArrayList<>();
-        for (ArrayList<Object> row : rows) {
-            if (rowMatches(row, null, resolvedConditions)) {
-                matchingRows.add(row);
+    /**
+     * Returns a table with the same rows (sharing this table's vectors), whose columns have the given qualifier.
+     * Unlike {@link #setQualifier}, this leaves the table itself untouched, so a table shared between queries (or
+     * appearing twice in one) can be given a different qualifier each time.
+     */
+    Table withQualifier(final String qualifier) {
+        ArrayList<ColumnDef> qualifiedColumns = new ArrayList<>();
+        for (ColumnDef columnDef : columns) {
+            ColumnDef qualifiedColumn = new ColumnDef(columnDef.name, columnDef.type);
+            qualifiedColumn.qualifier = qualifier;
+            qualifiedColumn.stats = columnDef.stats;
+            qualifiedColumns.add(qualifiedColumn);
+        }
+        return new Table(qualifiedColumns, vectors, rowCount, sortedIndexes, zoneMaps);
+    }
+
+    /**
+     * Returns a table with the same columns and rows (sharing this table's vectors) and the given index of each column
+     * (or null); see {@link SortedIndex}.
+     */
+    Table withSortedIndexes(final SortedIndex[] indexes) {
+        return new Table(columns, vectors, rowCount, indexes, zoneMaps);
+    }
+
+    /**
+     * Returns a table with the same columns and rows (sharing this table's vectors) and the given zone map of each
+     * column (or null); see {@link ZoneMap}.
+     */
+    Table withZoneMaps(final ZoneMap[] zoneMaps) {
+        return new Table(columns, vectors, rowCount, sortedIndexes, zoneMaps);
+    }
+
+    /**
+     * The index of the column's values, or null if it hasn't got one.
+     */
+    SortedIndex sortedIndex(final int column) {
+        return sortedIndexes != null ? sortedIndexes[column] : null;
+    }
+
+    /**
+     * The zone map of the column's blocks of rows, or null if it hasn't got one.
+     */
+    ZoneMap zoneMap(final int column) {
+        return zoneMaps != null ? zoneMaps[column] : null;
+    }
+
+    /**
+     * A read-only, row-oriented view of the table.  Each value is either a String or Integer object; cells are
+     * boxed on access, so this shouldn't be used on hot paths.
+     */
+    public List<List<Object>> rows() {
+        return new AbstractList<List<Object>>() {
+            @Override
+            public List<Object> get(final int row) {
+                if (row < 0 || row >= rowCount) {
+                    throw new IndexOutOfBoundsException("row " + row + " of " + rowCount);
+                }
+                return new AbstractList<Object>() {
+                    @Override
+                    public Object get(final int column) {
+                        return vectors.get(column).getValue(row);
+                    }
+
+                    @Override
+                    public int size() {
+                        return vectors.size();
+                    }
+                };
             }
+
+            @Override
+            public int size() {
+                return rowCount;
+            }
+        };
+    }
+
+    /**
+     * Returns the rows matching all of the conditions.  The result doesn't copy any cells: its vectors are
+     * {@link SelectedVector} views over this table's vectors, sharing one selection vector of matching positions.
+     */
+    public Table filter(final List<ResolvedCondition> resolvedConditions) {
+        return selectRows(FilterKernels.matchingRows(this, resolvedConditions));
+    }
+
+    /**
+     * Returns the given rows (in increasing order) as {@link SelectedVector} views over this table's vectors, or this
+     * table itself if that's all of its rows.
+     */
+    Table selectRows(final IntList rows) {
+        if (rows.size() == rowCount) {
+            return this;
         }
 
-        return new Table(columns, matchingRows);
+        return new Table(columns, SelectedVector.selectAll(vectors, rows.elements(), rows.size()), rows.size());
     }
 
     public Table select(final List<Selector> selectors) {
-        ArrayList<ColumnDef> selectedColumns = new ArrayList<>();
-        ArrayList<Integer> indicesToSelect = new ArrayList<>();
-        for (Selector selector : selectors) {
-            int index = getMatchingColumnIndex(selector.source);
-            ColumnDef columnDef = columns.get(index);
-            selectedColumns.add(new ColumnDef(selector.name, columnDef.type));
-            indicesToSelect.add(index);
+        ArrayList<ColumnVector> selectedVectors = new ArrayList<>();
+        for (int index : getSelectedColumnIndexes(columns, selectors)) {
+            // vectors are never modified once built, so the selected columns can share them
+            selectedVectors.add(vectors.get(index));
         }
 
-        ArrayList<ArrayList<Object>> selectedRows = new ArrayList<>();
-        for (ArrayList<Object> row : rows) {
-            ArrayList<Object> selectedRow = new ArrayList<>();
-            for (int index : indicesToSelect) {
-                selectedRow.add(row.get(index));
-            }
-            selectedRows.add(selectedRow);
+        return new Table(selectColumns(columns, selectors), selectedVectors, rowCount);
+    }
+
+    /**
+     * The columns {@link #select} outputs for a table with the given columns.
+     */
+    static ArrayList<ColumnDef> selectColumns(final List<ColumnDef> columns, final List<Selector> selectors) {
+        ArrayList<ColumnDef> selectedColumns = new ArrayList<>();
+        for (int index : getSelectedColumnIndexes(columns, selectors)) {
+            selectedColumns.add(new ColumnDef(selectors.get(selectedColumns.size()).name, columns.get(index).type));
         }
+        return selectedColumns;
+    }
 
-        return new Table(selectedColumns, selectedRows);
+    /**
+     * The index in {@code columns} of the source of each selector.
+     */
+    static int[] getSelectedColumnIndexes(final List<ColumnDef> columns, final List<Selector> selectors) {
+        int[] indexes = new int[selectors.size()];
+        for (int i = 0; i < selectors.size(); i++) {
+            indexes[i] = getMatchingColumnIndex(columns, selectors.get(i).source);
+        }
+        return indexes;
     }
 
     Optional<ColumnDef> getMatchingColumn(final ColumnRef columnRef) {
-        int index = getMatchingColumnIndex(columnRef);
+        int index = getMatchingColumnIndex(columns, columnRef);
         if (index >= 0) {
             return Optional.of(columns.get(index));
         } else {
@@ -81,7 +201,7 @@ public final class Table extends Node {
         }
     }
 
-    private int getMatchingColumnIndex(final ColumnRef columnRef) {
+    private static int getMatchingColumnIndex(final List<ColumnDef> columns, final ColumnRef columnRef) {
         for (int i = 0; i < columns.size(); i++) {
             ColumnDef columnDef = columns.get(i);
             if (columnDef.matchesReference(columnRef)) {
@@ -92,89 +212,71 @@ public final class Table extends Node {
         return -1;
     }
 
-    private boolean rowMatches(final List<Object> leftRow, final List<Object> rightRow,
-                               final List<ResolvedCondition> conditions) {
-        boolean match = true;
-        for (ResolvedCondition condition : conditions) {
-            if (!condition.evaluate(leftRow, rightRow)) {
-                match = false;
-            }
-        }
-
-        return match;
-    }
-
-    Table hashJoin(final Table other, final ResolvedCondition indexCondition,
+    /**
+     * Joins with the table indexed by {@code index}, probing it with the {@code probeKey} of each of this table's
+     * rows; see {@link HashJoin}.
+     */
+    Table hashJoin(final HashJoin.Index index, final ResolvedTerm probeKey,
                    final List<ResolvedCondition> remainingConditions) {
-        ArrayList<ColumnDef> outputColumns = new ArrayList<>();
-        outputColumns.addAll(columns);
-        outputColumns.addAll(other.columns);
-
-        Map<Object, List<List<Object>>> index = new HashMap<>();
-        for (List<Object> leftRow : rows) {
-            Object key = indexCondition.left.getValueForRow(leftRow);
-            List<List<Object>> rowList = index.getOrDefault(key, new ArrayList<>());
-            rowList.add(leftRow);
-            index.put(key, rowList);
-        }
-
-        ArrayList<ArrayList<Object>> outputRows = new ArrayList<>();
-        for (List<Object> rightRow : other.rows) {
-            Object key = indexCondition.right.getValueForRow(rightRow);
-            if (index.containsKey(key)) {
-                List<List<Object>> matchingRows = index.get(key);
-                for (List<Object> leftRow : matchingRows) {
-                    ArrayList<Object> outputRow = new ArrayList<>();
-                    outputRow.addAll(leftRow);
-                    outputRow.addAll(rightRow);
-
-                    if (rowMatches(leftRow, rightRow, remainingConditions)) {
-                        outputRows.add(outputRow);
-                    }
-                }
-            }
-        }
+        IntList[] matchingRows = HashJoin.probe(this, probeKey, index, remainingConditions);
+        return joinedTable(index.table, matchingRows[0], matchingRows[1]);
+    }
 
-        return new Table(outputColumns, outputRows);
+    /**
+     * Joins with the table sorted by {@code index} on an INT range or equality condition; see {@link MergeJoin}.
+     */
+    Table mergeJoin(final MergeJoin.Index index, final List<ResolvedCondition> remainingConditions) {
+        IntList[] matchingRows = MergeJoin.probe(this, index, remainingConditions);
+        return joinedTable(index.table, matchingRows[0], matchingRows[1]);
     }
 
     Table innerJoin(final Table other, final List<ResolvedCondition> conditions) {
-        ArrayList<ColumnDef> outputColumns = new ArrayList<>();
-        outputColumns.addAll(columns);
-        outputColumns.addAll(other.columns);
-
-        ArrayList<ArrayList<Object>> outputRows = new ArrayList<>();
-        for (List<Object> leftRow : rows) {
-            for (List<Object> rightRow : other.rows) {
-                ArrayList<Object> outputRow = new ArrayList<>();
-                outputRow.addAll(leftRow);
-                outputRow.addAll(rightRow);
-
-                if (rowMatches(leftRow, rightRow, conditions)) {
-                    outputRows.add(outputRow);
+        Conjunction conjunction = new Conjunction(conditions);
+        IntList leftRows = new IntList();
+        IntList rightRows = new IntList();
+        for (int leftRow = 0; leftRow < rowCount; leftRow++) {
+            for (int rightRow = 0; rightRow < other.rowCount; rightRow++) {
+                if (conjunction.matches(this, leftRow, other, rightRow)) {
+                    leftRows.add(leftRow);
+                    rightRows.add(rightRow);
                 }
             }
         }
 
-        return new Table(outputColumns, outputRows);
+        return joinedTable(other, leftRows, rightRows);
     }
 
     Table crossJoin(final Table other) {
-        ArrayList<ColumnDef> crossJoinColumns = new ArrayList<>();
-        crossJoinColumns.addAll(columns);
-        crossJoinColumns.addAll(other.columns);
-
-        ArrayList<ArrayList<Object>> crossJoinRows = new ArrayList<>();
-        for (ArrayList<Object> row : rows) {
-            for (ArrayList<Object> otherRow : other.rows) {
-                ArrayList<Object> crossJoinRow = new ArrayList<>();
-                crossJoinRow.addAll(row);
-                crossJoinRow.addAll(otherRow);
-                crossJoinRows.add(crossJoinRow);
+        IntList leftRows = new IntList();
+        IntList rightRows = new IntList();
+        for (int leftRow = 0; leftRow < rowCount; leftRow++) {
+            for (int rightRow = 0; rightRow < other.rowCount; rightRow++) {
+                leftRows.add(leftRow);
+                rightRows.add(rightRow);
             }
         }
 
-        return new Table(crossJoinColumns, crossJoinRows);
+        return joinedTable(other, leftRows, rightRows);
+    }
+
+    /**
+     * Builds the output of a join: this table's columns followed by {@code other}'s, where output row {@code i} is
+     * made of row {@code leftRows[i]} of this table and row {@code rightRows[i]} of {@code other}.
+     *
+     * No cells are copied: each output column is a {@link SelectedVector} view over the table it came from, so a row
+     * of a many-way join is just a row number into each of the tables (shared by all of that table's columns), and
+     * cells are only read when they're compared or written out.
+     */
+    private Table joinedTable(final Table other, final IntList leftRows, final IntList rightRows) {
+        ArrayList<ColumnDef> outputColumns = new ArrayList<>();
+        outputColumns.addAll(columns);
+        outputColumns.addAll(other.columns);
+
+        ArrayList<ColumnVector> outputVectors = new ArrayList<>();
+        outputVectors.addAll(SelectedVector.selectAll(vectors, leftRows.elements(), leftRows.size()));
+        outputVectors.addAll(SelectedVector.selectAll(other.vectors, rightRows.elements(), rightRows.size()));
+
+        return new Table(outputColumns, outputVectors, leftRows.size());
     }
 
     @JsonFormat(shape=JsonFormat.Shape.ARRAY)
@@ -185,11 +287,16 @@ public final class Table extends Node {
         @JsonIgnore
         public String qualifier;
 
+        // filled in when the column is loaded from a file; null for computed columns
+        @JsonIgnore
+        public ColumnStats stats;
+
         @JsonCreator
         public ColumnDef(@JsonProperty("name") String name, @JsonProperty("type") SqlType type) {
             if (name == null) throw new IllegalArgumentException("'name' can't be null");
             if (type == null) throw new IllegalArgumentException("'type' can't be null");
             this.qualifier = null;
+            this.stats = null;
             this.name = name;
             this.type = type;
         }
@@ -206,72 +313,11 @@ public final class Table extends Node {
 
         @Override
         public Table deserialize(JsonParser jp, DeserializationContext ctx) throws IOException {
-            if (!jp.isExpectedStartArrayToken()) {
-                throw new JsonParseException(jp, "expecting start of an array (for table)");
-            }
-            jp.nextToken();
-
-            ArrayList<ColumnDef> columns = jp.readValueAs(new TypeReference<ArrayList<ColumnDef>>() {});
-            jp.nextToken();
-
-            ArrayList<ArrayList<Object>> rows = new ArrayList<>();
-            while (jp.getCurrentToken() != JsonToken.END_ARRAY) {
-                rows.add(readRow(jp, columns));
-            }
-            jp.nextToken();
-
-            return new Table(columns, rows);
-        }
-
-        private ArrayList<Object> readRow(JsonParser jp, ArrayList<ColumnDef> columns) throws IOException {
-            if (!jp.isExpectedStartArrayToken()) {
-                throw new JsonParseException(jp, "expecting start of an array (for table row), got" + jp.getCurrentToken());
-            }
-            jp.nextToken();
-
-            ArrayList<Object> row = new ArrayList<>();
-
-            for (int i = 0; i < columns.size(); i++) {
-                // If there aren't enough cells...
-                if (jp.currentToken() == JsonToken.END_ARRAY) {
-                    throw new JsonParseException(jp, "row only has " + i + " values, but there are " + columns.size() + " columns");
-                }
-
-                row.add(readCell(jp, columns.get(i)));;
-            }
-
-            // If there are too many cells...
-            if (jp.currentToken() != JsonToken.END_ARRAY) {
-                throw new JsonParseException(jp, "row has more than " + columns.size() + " values, but there are only " + columns.size() + " columns");
-            }
+            TableScan scan = new TableScan(jp);
+            Table table = scan.read(Integer.MAX_VALUE, true);
             jp.nextToken();
 
-            return row;
-        }
-
-        private Object readCell(JsonParser jp, ColumnDef columnDef) throws IOException {
-            Object value;
-
-            switch (columnDef.type) {
-                case STR:
-                    if (jp.currentToken() != JsonToken.VALUE_STRING) {
-                        throw new JsonParseException(jp, "got invalid cell value for column \"" + columnDef.name + "\"; expecting a string");
-                    }
-                    value = jp.getText();
-                    jp.nextToken();
-                    break;
-                case INT:
-                    if (jp.currentToken() != JsonToken.VALUE_NUMBER_INT) {
-                        throw new JsonParseException(jp, "got invalid cell value for column \"" + columnDef.name + "\"; expecting an integer");
-                    }
-                    value = jp.getIntValue();
-                    jp.nextToken();
-                    break;
-                default:
-                    throw new AssertionError("unhandled SqlType: " + columnDef.type);
-            }
-
-            return value;
+            return table;
         }
     }
 
@@ -282,24 +328,22 @@ public final class Table extends Node {
 
         @Override
         public void serialize(Table t, JsonGenerator g, SerializerProvider serializerProvider) throws IOException {
-            g.writeStartArray(t.rows.size() + 1);
+            g.writeStartArray(t.rowCount + 1);
 
             g.writeObject(t.columns);
 
-            for (int i = 0; i < t.rows.size(); i++) {
-                List<Object> row = t.rows.get(i);
-                if (row.size() != t.columns.size()) {
-                    throw new AssertionError("row " + (i+1) + " has " + row.size() + " cells, but the table has " + t.columns.size() + " columns");
-                }
-
-                g.writeStartArray(row.size());
-                for (Object cell : row) {
-                    if (cell instanceof String) {
-                        g.writeString((String) cell);
-                    } else if (cell instanceof Integer) {
-                        g.writeNumber((Integer) cell);
-                    } else {
-                        throw new AssertionError("row " + (i+1) + " has bad cell value type: " + cell.getClass().getName());
+            for (int row = 0; row < t.rowCount; row++) {
+                g.writeStartArray(t.vectors.size());
+                for (ColumnVector vector : t.vectors) {
+                    switch (vector.type) {
+                        case STR:
+                            g.writeString(vector.getString(row));
+                            break;
+                        case INT:
+                            g.writeNumber(vector.getInt(row));
+                            break;
+                        default:
+                            throw new AssertionError("row " + (row+1) + " has bad cell type: " + vector.type);
                     }
                 }
                 g.writeEndArray();
@@ -0,0 +1,62 @@
+package sql_evaluator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Loaded tables, kept across queries and keyed by source path.  A table is loaded again when the file it was loaded
+ * from has changed (its modification time or size differ), or when a newer ".table.bin" or ".table.json" file takes
+ * its place, or when its ".table.index" file (see {@link SortedIndex}) has been created, changed or removed.
+ *
+ * Cached tables are never filtered on load and have no qualifier; use {@link Table#withQualifier} to qualify them
+ * for a query.
+ */
+final class TableCache {
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * Returns the table for the ".table.json" path (or its ".table.bin" file, if that's current), loading it if
+     * it isn't cached or has changed.
+     */
+    synchronized Table get(final String tableSourcePath) throws IOException {
+        File file = new File(Main.hasCurrentBinaryTable(tableSourcePath) ? BinaryTable.binaryPath(tableSourcePath)
+                                                                          : tableSourcePath);
+        File indexFile = new File(SortedIndex.indexPath(tableSourcePath));
+        Entry entry = entries.get(tableSourcePath);
+        if (entry != null && entry.file.equals(file) && entry.lastModified == file.lastModified()
+                && entry.length == file.length() && entry.indexLastModified == indexFile.lastModified()) {
+            return entry.table;
+        }
+
+        // read the files' attributes before loading them, so a change made while loading is picked up next time
+        long lastModified = file.lastModified();
+        long length = file.length();
+        long indexLastModified = indexFile.lastModified();
+        // a ".table.bin" file stores its zone maps; a JSON table's are built as it's loaded
+        Table table = file.getPath().equals(tableSourcePath)
+                ? ZoneMap.attach(JacksonUtil.readFromFile(tableSourcePath, Table.class))
+                : BinaryTable.map(file.getPath());
+        table = SortedIndex.attach(table, tableSourcePath);
+        entries.put(tableSourcePath, new Entry(file, lastModified, length, indexLastModified, table));
+        return table;
+    }
+
+    private static final class Entry {
+        final File file;
+        final long lastModified;
+        final long length;
+        final long indexLastModified;  // 0 if there's no index file
+        final Table table;
+
+        Entry(final File file, final long lastModified, final long length, final long indexLastModified,
+              final Table table) {
+            this.file = file;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.indexLastModified = indexLastModified;
+            this.table = table;
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package sql_evaluator;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads the rows of a ".table.json" file a batch at a time, straight off a {@code JsonParser}.  Each row is parsed
+ * into a reusable row buffer, and each cell is checked against the scan's filter conditions on its column as soon as
+ * it's parsed.  The rest of a rejected row is skipped token by token (checking the row's shape, but without decoding
+ * any values), and nothing from it is ever added to a batch.  STR cells are interned per column straight from the
+ * parser's text buffer, so a value that repeats (as country names do) is only allocated as a String once.
+ *
+ * {@link Table.Deserializer} uses a scan to load a whole table.  A table file that's too large to load at once is
+ * instead {@link #open}ed and streamed through a {@link Pipeline}, a batch at a time.
+ */
+final class TableScan implements Closeable {
+
+    /**
+     * Files at least this large (in bytes) are streamed rather than loaded, from the "sql_evaluator.streamThreshold"
+     * system property.  Defaults to a quarter of the maximum heap size.
+     */
+    static final long STREAM_THRESHOLD = Long.getLong("sql_evaluator.streamThreshold",
+                                                      Runtime.getRuntime().maxMemory() / 4);
+
+    // rows read by open() before streaming starts, which the planner estimates the rest of the table from
+    static final int SAMPLE_ROWS = 4096;
+
+    final ArrayList<Table.ColumnDef> columns;
+
+    /**
+     * For a scan that was {@link #open}ed: the first rows of the table (unfiltered, with statistics), and the
+     * estimated number of rows in the whole table.
+     */
+    Table sample;
+    double estimatedRowCount;
+
+    // rows parsed so far, whether or not they matched the filter conditions
+    long parsedRowCount;
+
+    private final JsonParser jp;
+    private final boolean ownsParser;
+    private final int[] rowInts;
+    private final String[] rowStrings;
+    private final StringInterner[] interners;  // by column; null for INT columns
+    private final List<List<ResolvedCondition>> filterConditionsByColumn = new ArrayList<>();  // null if none
+    private boolean finished = false;  // the parser has been closed after the end of the table
+
+    /**
+     * Starts a scan with the parser on the start of the table's array, and reads the column definitions.
+     */
+    TableScan(final JsonParser jp) throws IOException {
+        this(jp, false);
+    }
+
+    private TableScan(final JsonParser jp, final boolean ownsParser) throws IOException {
+        if (!jp.isExpectedStartArrayToken()) {
+            throw new JsonParseException(jp, "expecting start of an array (for table)");
+        }
+        jp.nextToken();
+
+        this.columns = jp.readValueAs(new TypeReference<ArrayList<Table.ColumnDef>>() {});
+        jp.nextToken();
+
+        this.jp = jp;
+        this.ownsParser = ownsParser;
+        this.rowInts = new int[columns.size()];
+        this.rowStrings = new String[columns.size()];
+        this.interners = new StringInterner[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).type == SqlType.STR) {
+                interners[i] = new StringInterner();
+            }
+        }
+        setFilterConditions(Collections.emptyList());
+    }
+
+    /**
+     * Opens a table file and reads its column definitions.
+     */
+    static TableScan open(final String path) throws IOException {
+        JsonParser jp = JacksonUtil.createParser(path);
+        try {
+            jp.nextToken();
+            return new TableScan(jp, true);
+        } catch (IOException | RuntimeException e) {
+            jp.close();
+            throw e;
+        }
+    }
+
+    void setQualifier(final String qualifier) {
+        for (Table.ColumnDef columnDef : columns) {
+            columnDef.qualifier = qualifier;
+        }
+    }
+
+    /**
+     * Reads the first rows of a table that's going to be streamed into {@link #sample}, and estimates the size of
+     * the whole table from the size of its file.
+     */
+    void readSample(final String path) throws IOException {
+        long sampleStart = jp.getTokenLocation().getByteOffset();
+        sample = read(SAMPLE_ROWS, true);
+        estimatedRowCount = sample.rowCount;
+        if (hasMoreRows() && sample.rowCount > 0) {
+            long sampleEnd = jp.getTokenLocation().getByteOffset();
+            double bytesPerRow = (double) (sampleEnd - sampleStart) / sample.rowCount;
+            estimatedRowCount += (new File(path).length() - sampleEnd) / bytesPerRow;
+        }
+    }
+
+    /**
+     * Only rows matching all of {@code conditions} (single-table filters, resolved against the scan's columns) are
+     * read from now on.
+     */
+    void setFilterConditions(final List<ResolvedCondition> conditions) {
+        filterConditionsByColumn.clear();
+        filterConditionsByColumn.addAll(Collections.nCopies(columns.size(), null));
+        for (ResolvedCondition condition : conditions) {
+            int column = ((ResolvedColumn) condition.left).columnIndex;
+            if (filterConditionsByColumn.get(column) == null) {
+                filterConditionsByColumn.set(column, new ArrayList<>());
+            }
+            filterConditionsByColumn.get(column).add(condition);
+        }
+    }
+
+    boolean hasMoreRows() {
+        return !finished && jp.currentToken() != JsonToken.END_ARRAY;
+    }
+
+    /**
+     * Reads rows until {@code maxRows} of them have matched the filter conditions or the table ends, and returns
+     * the matching rows.  {@code collectStats} sets each column's {@link Table.ColumnDef#stats} from those rows.
+     */
+    Table read(final int maxRows, final boolean collectStats) throws IOException {
+        ArrayList<ColumnBuilder> builders = new ArrayList<>();
+        for (Table.ColumnDef columnDef : columns) {
+            builders.add(new ColumnBuilder(columnDef.type, collectStats));
+        }
+
+        int rowCount = 0;
+        while (rowCount < maxRows && hasMoreRows()) {
+            parsedRowCount++;
+            if (readRow()) {
+                for (int i = 0; i < columns.size(); i++) {
+                    builders.get(i).add(rowInts[i], rowStrings[i]);
+                }
+                rowCount++;
+            }
+        }
+
+        if (ownsParser && !finished && jp.currentToken() == JsonToken.END_ARRAY) {
+            jp.nextToken();
+            if (jp.nextToken() != null) {
+                throw new JsonParseException(jp, "found unexpected data after entire value was parsed");
+            }
+            jp.close();
+            finished = true;
+        }
+
+        ArrayList<ColumnVector> vectors = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+            vectors.add(builders.get(i).build());
+            if (collectStats) {
+                columns.get(i).stats = builders.get(i).statsBuilder.build();
+            }
+        }
+
+        return new Table(columns, vectors, rowCount);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (ownsParser) {
+            jp.close();
+        }
+    }
+
+    /**
+     * Reads the next row into the row buffer and returns true, or skips it and returns false if it doesn't match the
+     * filter conditions.
+     */
+    private boolean readRow() throws IOException {
+        if (!jp.isExpectedStartArrayToken()) {
+            throw new JsonParseException(jp, "expecting start of an array (for table row), got" + jp.getCurrentToken());
+        }
+        jp.nextToken();
+
+        boolean match = true;
+        for (int i = 0; i < columns.size(); i++) {
+            // If there aren't enough cells...
+            if (jp.currentToken() == JsonToken.END_ARRAY) {
+                throw new JsonParseException(jp, "row only has " + i + " values, but there are " + columns.size() + " columns");
+            }
+
+            if (match) {
+                match = readCell(i);
+            } else {
+                skipCell(i);
+            }
+        }
+
+        // If there are too many cells...
+        if (jp.currentToken() != JsonToken.END_ARRAY) {
+            throw new JsonParseException(jp, "row has more than " + columns.size() + " values, but there are only " + columns.size() + " columns");
+        }
+        jp.nextToken();
+
+        return match;
+    }
+
+    /**
+     * Reads a cell into the row buffer, unless it fails one of its column's filter conditions.  Returns whether it
+     * passed them all.
+     */
+    private boolean readCell(final int column) throws IOException {
+        Table.ColumnDef columnDef = columns.get(column);
+        List<ResolvedCondition> conditions = filterConditionsByColumn.get(column);
+        checkCellType(columnDef);
+        switch (columnDef.type) {
+            case STR:
+                if (conditions != null) {
+                    for (ResolvedCondition condition : conditions) {
+                        if (!testStringCell(condition)) {
+                            jp.nextToken();
+                            return false;
+                        }
+                    }
+                }
+                rowStrings[column] = interners[column].intern(jp.getTextCharacters(), jp.getTextOffset(),
+                                                              jp.getTextLength());
+                jp.nextToken();
+                return true;
+            case INT:
+                int value = jp.getIntValue();
+                rowInts[column] = value;
+                jp.nextToken();
+                if (conditions != null) {
+                    for (ResolvedCondition condition : conditions) {
+                        if (!ResolvedCondition.compare(condition.op, value, condition.right.getIntForRow(null, -1))) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            default:
+                throw new AssertionError("unhandled SqlType: " + columnDef.type);
+        }
+    }
+
+    /**
+     * Tests the current STR cell against a condition, comparing the parser's buffered characters with the literal
+     * rather than allocating a String for the cell.
+     */
+    private boolean testStringCell(final ResolvedCondition condition) throws IOException {
+        String literal = condition.right.getStringForRow(null, -1);
+        boolean equal;
+        int length = jp.getTextLength();
+        if (length != literal.length()) {
+            equal = false;
+        } else {
+            char[] chars = jp.getTextCharacters();
+            int offset = jp.getTextOffset();
+            equal = true;
+            for (int i = 0; i < length && equal; i++) {
+                equal = chars[offset + i] == literal.charAt(i);
+            }
+        }
+
+        switch (condition.op) {
+            case EQ:
+                return equal;
+            case NE:
+                return !equal;
+            default:
+                throw new RuntimeException("Unexpected operation type for comparison: " + condition.op);
+        }
+    }
+
+    /**
+     * Moves past a cell of a rejected row, checking its type but not decoding it.
+     */
+    private void skipCell(final int column) throws IOException {
+        checkCellType(columns.get(column));
+        jp.nextToken();
+    }
+
+    private void checkCellType(final Table.ColumnDef columnDef) throws IOException {
+        switch (columnDef.type) {
+            case STR:
+                if (jp.currentToken() != JsonToken.VALUE_STRING) {
+                    throw new JsonParseException(jp, "got invalid cell value for column \"" + columnDef.name + "\"; expecting a string");
+                }
+                break;
+            case INT:
+                if (jp.currentToken() != JsonToken.VALUE_NUMBER_INT) {
+                    throw new JsonParseException(jp, "got invalid cell value for column \"" + columnDef.name + "\"; expecting an integer");
+                }
+                break;
+            default:
+                throw new AssertionError("unhandled SqlType: " + columnDef.type);
+        }
+    }
+
+    /**
+     * Accumulates the cells (and optionally the statistics) of one column of a batch.
+     */
+    private static final class ColumnBuilder {
+        final IntVector.Builder intBuilder;
+        final StrVector.Builder strBuilder;
+        final ColumnStats.Builder statsBuilder;
+
+        ColumnBuilder(final SqlType type, final boolean collectStats) {
+            this.intBuilder = type == SqlType.INT ? new IntVector.Builder() : null;
+            this.strBuilder = type == SqlType.STR ? new StrVector.Builder() : null;
+            this.statsBuilder = collectStats ? new ColumnStats.Builder(type) : null;
+        }
+
+        void add(final int intValue, final String strValue) {
+            if (intBuilder != null) {
+                intBuilder.add(intValue);
+                if (statsBuilder != null) {
+                    statsBuilder.addInt(intValue);
+                }
+            } else {
+                strBuilder.add(strValue);
+                if (statsBuilder != null) {
+                    statsBuilder.addString(strValue);
+                }
+            }
+        }
+
+        ColumnVector build() {
+            return intBuilder != null ? intBuilder.build() : strBuilder.build();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package sql_evaluator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects rows into a {@link Table}, up to a maximum number of rows.  Once there are more than that, the rows
+ * collected so far are dropped and the sink {@link #isDone is done}, so that the caller can fall back to something
+ * that doesn't need all of them in memory.
+ */
+final class TableSink implements RowSink {
+    private final int maxRows;
+    private ArrayList<Table.ColumnDef> columns;
+    private final List<Table> batches = new ArrayList<>();
+    private long rowCount = 0;
+
+    TableSink(final int maxRows) {
+        this.maxRows = maxRows;
+    }
+
+    @Override
+    public void begin(final List<Table.ColumnDef> columns) {
+        this.columns = new ArrayList<>(columns);
+    }
+
+    @Override
+    public void accept(final Table batch) {
+        rowCount += batch.rowCount;
+        if (rowCount <= maxRows) {
+            batches.add(batch);
+        } else {
+            batches.clear();
+        }
+    }
+
+    @Override
+    public boolean isDone() {
+        return rowCount > maxRows;
+    }
+
+    @Override
+    public void end() {
+    }
+
+    /**
+     * The collected rows, in the order they arrived, or null if there were too many.
+     */
+    Table table() {
+        if (isDone()) {
+            return null;
+        }
+
+        int count = (int) rowCount;
+        ArrayList<ColumnVector> vectors = new ArrayList<>();
+        for (int column = 0; column < columns.size(); column++) {
+            boolean isInt = columns.get(column).type == SqlType.INT;
+            vectors.add(isInt ? concatInts(column, count) : concatStrs(column, count));
+        }
+        return new Table(columns, vectors, count);
+    }
+
+    private ColumnVector concatInts(final int column, final int count) {
+        int[] values = new int[count];
+        int[] batchValues = new int[Pipeline.BATCH_SIZE];
+        int offset = 0;
+        for (Table batch : batches) {
+            ColumnVector vector = batch.vectors.get(column);
+            for (int from = 0; from < batch.rowCount; from += batchValues.length) {
+                int chunk = Math.min(batchValues.length, batch.rowCount - from);
+                vector.getInts(from, chunk, batchValues);
+                System.arraycopy(batchValues, 0, values, offset, chunk);
+                offset += chunk;
+            }
+        }
+        return new IntVector(values, count);
+    }
+
+    /**
+     * Concatenates the codes of a STR column if every batch shares one dictionary (as batches selected from the same
+     * table do), and otherwise builds a new dictionary.
+     */
+    private ColumnVector concatStrs(final int column, final int count) {
+        Dictionary dictionary = batches.isEmpty() ? Dictionary.of(new ArrayList<>())
+                                                  : batches.get(0).vectors.get(column).dictionary();
+        for (Table batch : batches) {
+            if (dictionary == null || batch.vectors.get(column).dictionary() != dictionary) {
+                dictionary = null;
+                break;
+            }
+        }
+
+        if (dictionary == null) {
+            StrVector.Builder builder = new StrVector.Builder();
+            for (Table batch : batches) {
+                ColumnVector vector = batch.vectors.get(column);
+                for (int row = 0; row < batch.rowCount; row++) {
+                    builder.add(vector.getString(row));
+                }
+            }
+            return builder.build();
+        }
+
+        int[] codes = new int[count];
+        int[] batchCodes = new int[Pipeline.BATCH_SIZE];
+        int offset = 0;
+        for (Table batch : batches) {
+            ColumnVector vector = batch.vectors.get(column);
+            for (int from = 0; from < batch.rowCount; from += batchCodes.length) {
+                int chunk = Math.min(batchCodes.length, batch.rowCount - from);
+                vector.getCodes(from, chunk, batchCodes);
+                System.arraycopy(batchCodes, 0, codes, offset, chunk);
+                offset += chunk;
+            }
+        }
+        return new StrVector(codes, count, dictionary);
+    }
+}
@@ -14,6 +14,10 @@ public final class Validator {
         for (Selector selector : query.select) {
             checkSelectorValidity(tables, selector);
         }
+
+        for (SortKey key : query.orderBy) {
+            getMatchingColumn(tables, Executor.getSortSource(query.select, key));
+        }
     }
 
     static void checkConditionValidity(final List<Table> tables, final Condition condition) {
@@ -0,0 +1,215 @@
+package sql_evaluator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A summary of each block of {@link #BLOCK_SIZE} rows of a column, from which a filter can tell that none of a block's
+ * rows can pass a condition comparing the column with a literal, and skip the block without reading it.  For an INT
+ * column, each block's smallest and largest value; for a STR column, the smallest and largest of its dictionary codes
+ * and a 64-bit Bloom filter of them, which together rule out "=" for most literals that aren't in the block.
+ *
+ * Blocks line up with the chunks {@link FilterKernels} filters, and pay off when a column's values are clustered, like
+ * the timestamps of a table of events written in time order.  They're built when a table is loaded to be kept (by
+ * {@link TableCache}) or converted to a ".table.bin" file, which stores them.
+ */
+final class ZoneMap {
+    static final int BLOCK_SIZE = FilterKernels.CHUNK_SIZE;
+
+    // a table with no more rows than this is read in a block or two anyway, and isn't given zone maps
+    static final int MIN_ROWS = 2 * BLOCK_SIZE;
+
+    private final SqlType type;
+    private final int[] mins;
+    private final int[] maxes;
+    private final long[] codeBits;  // STR only
+
+    private ZoneMap(final SqlType type, final int[] mins, final int[] maxes, final long[] codeBits) {
+        this.type = type;
+        this.mins = mins;
+        this.maxes = maxes;
+        this.codeBits = codeBits;
+    }
+
+    /**
+     * Builds a zone map of the vector, or returns null for a STR vector without a dictionary.
+     */
+    static ZoneMap build(final ColumnVector vector) {
+        if (vector.type == SqlType.STR && vector.dictionary() == null) {
+            return null;
+        }
+
+        int blockCount = (vector.size() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int[] mins = new int[blockCount];
+        int[] maxes = new int[blockCount];
+        long[] codeBits = vector.type == SqlType.STR ? new long[blockCount] : null;
+        int[] values = new int[BLOCK_SIZE];
+        for (int block = 0; block < blockCount; block++) {
+            int start = block * BLOCK_SIZE;
+            int count = Math.min(BLOCK_SIZE, vector.size() - start);
+            if (vector.type == SqlType.INT) {
+                vector.getInts(start, count, values);
+            } else {
+                vector.getCodes(start, count, values);
+            }
+
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            long bits = 0;
+            for (int i = 0; i < count; i++) {
+                min = Math.min(min, values[i]);
+                max = Math.max(max, values[i]);
+                bits |= codeBit(values[i]);
+            }
+            mins[block] = min;
+            maxes[block] = max;
+            if (codeBits != null) {
+                codeBits[block] = bits;
+            }
+        }
+        return new ZoneMap(vector.type, mins, maxes, codeBits);
+    }
+
+    /**
+     * Returns the table with a zone map of each of its columns, or the table itself if it's too small to need them.
+     */
+    static Table attach(final Table table) {
+        if (table.rowCount <= MIN_ROWS) {
+            return table;
+        }
+        ZoneMap[] zoneMaps = new ZoneMap[table.vectors.size()];
+        for (int column = 0; column < zoneMaps.length; column++) {
+            zoneMaps[column] = build(table.vectors.get(column));
+        }
+        return table.withZoneMaps(zoneMaps);
+    }
+
+    private static long codeBit(final int code) {
+        // a multiplicative hash, so that codes close together (as a block's often are) don't share bits
+        return 1L << ((code * 0x9E3779B9) >>> 26);
+    }
+
+    /**
+     * Writes the zone map as an int block count, then each block's int minimum and int maximum, then for STR, each
+     * block's long Bloom filter.
+     */
+    void writeTo(final BinaryTable.Output out) throws IOException {
+        out.reserve(4).putInt(mins.length);
+        for (int block = 0; block < mins.length; block++) {
+            out.reserve(8).putInt(mins[block]).putInt(maxes[block]);
+        }
+        if (codeBits != null) {
+            for (long bits : codeBits) {
+                out.reserve(8).putLong(bits);
+            }
+        }
+    }
+
+    /**
+     * Reads a zone map written by {@link #writeTo} for a column of {@code rowCount} rows.
+     */
+    static ZoneMap readFrom(final SqlType type, final int rowCount, final ByteBuffer in) throws IOException {
+        int blockCount = in.getInt();
+        if (blockCount != (rowCount + BLOCK_SIZE - 1) / BLOCK_SIZE
+                || (long) blockCount * (type == SqlType.STR ? 16 : 8) > in.remaining()) {
+            throw new IOException("zone map is truncated or corrupt");
+        }
+        int[] mins = new int[blockCount];
+        int[] maxes = new int[blockCount];
+        for (int block = 0; block < blockCount; block++) {
+            mins[block] = in.getInt();
+            maxes[block] = in.getInt();
+        }
+        long[] codeBits = null;
+        if (type == SqlType.STR) {
+            codeBits = new long[blockCount];
+            for (int block = 0; block < blockCount; block++) {
+                codeBits[block] = in.getLong();
+            }
+        }
+        return new ZoneMap(type, mins, maxes, codeBits);
+    }
+
+    /**
+     * Whether any cell of the block might pass {@code op literal}, where {@code literal} is an INT value or for STR,
+     * a dictionary code (-1 for a string that isn't in the dictionary).
+     */
+    boolean mayMatch(final int block, final Condition.Op op, final int literal) {
+        int min = mins[block];
+        int max = maxes[block];
+        switch (op) {
+            case EQ:
+                return min <= literal && literal <= max
+                        && (codeBits == null || (codeBits[block] & codeBit(literal)) != 0);
+            case NE:
+                return min != literal || max != literal;
+            case LT:
+                return type == SqlType.STR || min < literal;
+            case LE:
+                return type == SqlType.STR || min <= literal;
+            case GT:
+                return type == SqlType.STR || max > literal;
+            case GE:
+                return type == SqlType.STR || max >= literal;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Checks blocks of a table's rows against the conditions (all {@link ResolvedCondition#isEvaluable evaluable}
+     * single-table filters) on its columns that have zone maps.
+     */
+    static final class Pruner {
+        private final List<ZoneMap> zoneMaps = new ArrayList<>();
+        private final List<Condition.Op> ops = new ArrayList<>();
+        private final IntList literals = new IntList();
+
+        /**
+         * Returns a pruner for the conditions on {@code table}, or null if none of them can rule out any blocks.
+         */
+        static Pruner create(final Table table, final List<ResolvedCondition> conditions) {
+            List<ResolvedCondition> kernelConditions = new ArrayList<>();
+            IntList literals = new IntList();
+            for (ResolvedCondition condition : conditions) {
+                if (FilterKernels.isKernelCondition(table, condition)) {
+                    kernelConditions.add(condition);
+                    literals.add(FilterKernels.kernelLiteral(table, condition));
+                }
+            }
+            return create(table, kernelConditions, literals.elements());
+        }
+
+        /**
+         * Like {@link #create(Table, List)}, for conditions that kernels can check, where {@code literals[k]} is
+         * {@link FilterKernels#kernelLiteral} of {@code conditions[k]}.
+         */
+        static Pruner create(final Table table, final List<ResolvedCondition> conditions, final int[] literals) {
+            Pruner pruner = new Pruner();
+            for (int k = 0; k < conditions.size(); k++) {
+                ResolvedCondition condition = conditions.get(k);
+                ZoneMap zoneMap = table.zoneMap(((ResolvedColumn) condition.left).columnIndex);
+                if (zoneMap != null && zoneMap.type == condition.type) {
+                    pruner.zoneMaps.add(zoneMap);
+                    pruner.ops.add(condition.op);
+                    pruner.literals.add(literals[k]);
+                }
+            }
+            return pruner.zoneMaps.isEmpty() ? null : pruner;
+        }
+
+        /**
+         * Whether any row of the block might pass every condition.
+         */
+        boolean mayMatch(final int block) {
+            for (int i = 0; i < zoneMaps.size(); i++) {
+                if (!zoneMaps.get(i).mayMatch(block, ops.get(i), literals.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}